@@ -8,10 +8,12 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
@@ -38,27 +40,63 @@ import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 @SuppressWarnings("restriction")
 public class Entities implements Iterable<IJavaElement> {
 
+	/**
+	 * An occurrence of an element in the source. It only refers to its node by
+	 * compilation unit handle, node type and source range, so that it doesn't keep
+	 * the AST it was harvested from reachable. The node is resolved again against
+	 * the AST being rewritten.
+	 */
 	public static class Instance {
 		public final IJavaElement element;
-		public final ASTNode node;
+		/**
+		 * The handle identifier of the compilation unit containing the node.
+		 */
+		public final String compilationUnit;
+		public final int nodeType;
+		public final ISourceRange range;
 		public final EnumSet<PreconditionFailure> failures;
 		public final Action action;
 
 		public Instance(final IJavaElement e, final ASTNode n, final EnumSet<PreconditionFailure> pf, final Action a) {
 			this.element = e;
-			this.node = n;
+			final IJavaElement unit = ((CompilationUnit) n.getRoot()).getJavaElement();
+			this.compilationUnit = unit == null ? null : unit.getHandleIdentifier();
+			this.nodeType = n.getNodeType();
+			this.range = Util.getSourceRange(n);
 			this.failures = pf;
 			this.action = a;
 		}
+
+		/**
+		 * Copies the node of the given instance for another element.
+		 */
+		public Instance(final IJavaElement e, final Instance i) {
+			this.element = e;
+			this.compilationUnit = i.compilationUnit;
+			this.nodeType = i.nodeType;
+			this.range = i.range;
+			this.failures = i.failures;
+			this.action = i.action;
+		}
 		
 		@Override
 		public boolean equals(Object _other) {
 			Instance other = (Instance)_other;
 			return this.element.equals(other.element) &&
-					Util.getSourceRange(this.node).equals(Util.getSourceRange(other.node)) &&
+					this.range.equals(other.range) &&
 					this.failures.equals(other.failures) &&
 					this.action.equals(other.action);
 		}
+
+		/**
+		 * @param finder A finder over an AST of the compilation unit containing the
+		 *               node.
+		 * @return The node of this instance in the AST of finder, or
+		 *         <code>null</code> if there is none.
+		 */
+		public ASTNode resolve(final ASTNodeFinder finder) {
+			return finder.find(this.nodeType, this.range);
+		}
 	}
 
 	public static Entities create(final Set<IJavaElement> elements, final Set<Instance> instances, 
@@ -303,10 +341,14 @@ public class Entities implements Iterable<IJavaElement> {
 	public void transform() throws CoreException {
 		for (final CompilationUnitRewrite rewrite : this.rewriteMap.keySet()) {
 			final ASTNodeFinder finder = ASTNodeFinder.create(rewrite.getRoot());
+			final String unit = rewrite.getCu().getHandleIdentifier();
 			for (final IJavaElement element : this.rewriteMap.get(rewrite)) {
 				final Set<Instance> instances = this.instances.get(element);
 				for (final Instance i : instances) {
-					final ASTNode node = finder.find(i.node);
+					// instances in other units have no node in this rewrite.
+					if (!unit.equals(i.compilationUnit))
+						continue;
+					final ASTNode node = i.resolve(finder);
 					final Action action = this.determine(node, element);
 					this.process(node, action, rewrite);
 				}
@@ -72,6 +72,85 @@ public class RefactoringSettings {
 		REFACTOR_OBJECT_INSTANCES
 	}
 
+	/**
+	 * Modes change how the analysis is carried out, but not its results.
+	 */
+	public static enum Mode {
+
+		/**
+		 * Including this means that the source compilation units of project, source
+		 * folder and package scopes are parsed together with a single
+		 * binding-resolving parser so that the compiler's lookup environment is only
+		 * built once per batch. The units are batched in waves whose ASTs fit the
+		 * budget of the AST cache, and each wave is harvested before the next is
+		 * parsed.
+		 */
+		BATCH_PARSING,
+		/**
+		 * Including this means that the occurrences of all elements on the frontier
+		 * of the work list are searched for at once with a disjunctive search
+		 * pattern, and each match is then routed back to the element it's an
+		 * occurrence of.
+		 */
+		BATCH_SEARCHES,
+		/**
+		 * Including this means that the harvesters first build the complete null
+		 * flow graph reachable from their seeds, and then extract the refactorable
+		 * sets from it as connected components in a single pass, instead of growing
+		 * the sets while propagating. This takes precedence over
+		 * {@link #BATCH_SEARCHES}.
+		 */
+		FLOW_GRAPH,
+		/**
+		 * Including this means that, instead of searching, the occurrences of program
+		 * elements are looked up in an index of the declarations and references in
+		 * all source compilation units in scope, which is built once per run with a
+		 * single binding-resolved pass.
+		 */
+		INDEX_REFERENCES,
+		/**
+		 * Including this means that the pre-filter results of each source file, i.e.,
+		 * the kinds of seed sites in it, are looked up in a persistent cache keyed by
+		 * the modification stamp of the file, so that only the files that were
+		 * modified since they were last scanned are scanned again.
+		 */
+		INDEX_NULL_SITES,
+		/**
+		 * Including this means that compilation units are pre-filtered on all cores.
+		 * Unless {@link #BATCH_PARSING} is also included, the units of project,
+		 * source folder and package scopes are then parsed on all cores too, in
+		 * waves that fit the budget of the AST cache, and are seeded and propagated
+		 * one unit at a time in the original order. With {@link #BATCH_PARSING},
+		 * which isn't a default mode, only the pre-filter runs on all cores.
+		 */
+		PARALLEL_SEEDING,
+		/**
+		 * Including this means that the worklist is propagated one bounded frontier
+		 * at a time, the occurrences of the elements of a frontier being searched for
+		 * and their compilation units parsed on all cores, within the budget of the
+		 * AST cache, before they're processed. The matches themselves are still
+		 * propagated one after another in worklist order on the calling thread.
+		 */
+		PARALLEL_PROPAGATION,
+		/**
+		 * Including this means that the compilation units to be changed whose ASTs
+		 * were evicted from the AST cache are parsed again on all cores, within half
+		 * of the budget of the cache, before the changes are created. The rewriting
+		 * itself stays on the calling thread since it resolves bindings lazily.
+		 */
+		PARALLEL_CHANGE_CREATION,
+		/**
+		 * Including this means that the analysis and the change creation run against
+		 * in-memory working copies of the source compilation units in scope, which
+		 * are loaded once per run, including any unsaved editor contents.
+		 */
+		WORKING_COPY_LAYER
+	}
+
+	public static EnumSet<Mode> defaultModes() {
+		return EnumSet.noneOf(Mode.class);
+	}
+
 	public static RefactoringSettings testDefaults() {
 		return new RefactoringSettings(EnumSet.of(
 				Choice.REFACTOR_FIELDS, 
@@ -91,8 +170,47 @@ public class RefactoringSettings {
 
 	private final EnumSet<Choice> settings;
 
+	private final EnumSet<Mode> modes;
+
 	public RefactoringSettings(final EnumSet<Choice> settings) {
+		this(settings, defaultModes());
+	}
+
+	public RefactoringSettings(final EnumSet<Choice> settings, final EnumSet<Mode> modes) {
 		this.settings = settings;
+		this.modes = modes;
+	}
+
+	public boolean batchesParsing() {
+		return this.modes.contains(Mode.BATCH_PARSING);
+	}
+
+	public boolean batchesSearches() {
+		return this.modes.contains(Mode.BATCH_SEARCHES);
+	}
+
+	public boolean buildsFlowGraph() {
+		return this.modes.contains(Mode.FLOW_GRAPH);
+	}
+
+	public boolean indexesNullSites() {
+		return this.modes.contains(Mode.INDEX_NULL_SITES);
+	}
+
+	public boolean indexesReferences() {
+		return this.modes.contains(Mode.INDEX_REFERENCES);
+	}
+
+	public boolean layersWorkingCopies() {
+		return this.modes.contains(Mode.WORKING_COPY_LAYER);
+	}
+
+	public boolean propagatesInParallel() {
+		return this.modes.contains(Mode.PARALLEL_PROPAGATION);
+	}
+
+	public boolean seedsInParallel() {
+		return this.modes.contains(Mode.PARALLEL_SEEDING);
 	}
 
 	public boolean bridgeExternalCode() {
@@ -127,9 +245,31 @@ public class RefactoringSettings {
 				this.set(true, Choice.BRIDGE_EXTERNAL);
 			if (s.equalsIgnoreCase("bridge excluded"))
 				this.set(true, Choice.BRIDGE_ENTITIES_EXCLUDED_BY_SETTINGS);
+			if (s.equalsIgnoreCase("batchparsing"))
+				this.set(true, Mode.BATCH_PARSING);
+			if (s.equalsIgnoreCase("batchsearches"))
+				this.set(true, Mode.BATCH_SEARCHES);
+			if (s.equalsIgnoreCase("flowgraph"))
+				this.set(true, Mode.FLOW_GRAPH);
+			if (s.equalsIgnoreCase("indexreferences"))
+				this.set(true, Mode.INDEX_REFERENCES);
+			if (s.equalsIgnoreCase("indexnullsites"))
+				this.set(true, Mode.INDEX_NULL_SITES);
+			if (s.equalsIgnoreCase("parallelseeding"))
+				this.set(true, Mode.PARALLEL_SEEDING);
+			if (s.equalsIgnoreCase("parallelpropagation"))
+				this.set(true, Mode.PARALLEL_PROPAGATION);
+			if (s.equalsIgnoreCase("parallelchanges"))
+				this.set(true, Mode.PARALLEL_CHANGE_CREATION);
+			if (s.equalsIgnoreCase("workingcopylayer"))
+				this.set(true, Mode.WORKING_COPY_LAYER);
 		}
 	}
 
+	public boolean createsChangesInParallel() {
+		return this.modes.contains(Mode.PARALLEL_CHANGE_CREATION);
+	}
+
 	public boolean doesTransformation() {
 		return this.settings.contains(Choice.PERFORM_TRANSFORMATION);
 	}
@@ -138,6 +278,10 @@ public class RefactoringSettings {
 		return this.settings.contains(setting);
 	}
 
+	public boolean get(final Mode mode) {
+		return this.modes.contains(mode);
+	}
+
 	public boolean refactorsFields() {
 		return this.settings.contains(Choice.REFACTOR_FIELDS);
 	}
@@ -165,9 +309,16 @@ public class RefactoringSettings {
 			this.settings.remove(setting);
 	}
 
+	public void set(final boolean choice, final Mode mode) {
+		if (choice)
+			this.modes.add(mode);
+		else
+			this.modes.remove(mode);
+	}
+
 	@Override
 	public String toString() {
-		return this.settings.toString();
+		return this.settings.toString() + this.modes.toString();
 	}
 
 	public boolean refactorsObjects() {
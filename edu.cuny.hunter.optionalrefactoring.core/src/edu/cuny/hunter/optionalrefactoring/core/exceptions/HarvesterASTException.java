@@ -1,5 +1,6 @@
 package edu.cuny.hunter.optionalrefactoring.core.exceptions;
 
+import java.util.Collections;
 import java.util.Set;
 
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -29,6 +30,16 @@ public class HarvesterASTException extends HarvesterException {
 		this.instances = instances;
 	}
 
+	/**
+	 * A failure of the current set that has no failing instances of its own.
+	 */
+	public HarvesterASTException(final String message, final ASTNode node) {
+		super(message, RefactoringStatus.ERROR);
+		this.failingNode = node;
+		this.candidates = Collections.emptySet();
+		this.instances = Collections.emptySet();
+	}
+
 	public HarvesterASTException(final PreconditionFailure failure, final ASTNode problem) {
 		super(failure.getMessage(), RefactoringStatus.FATAL);
 		this.failingNode = problem;
@@ -0,0 +1,151 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.IJavaElement;
+
+/**
+ * The computation forest of a {@link WorkList}, i.e., a union-find over the
+ * elements seen so far, in which two elements are in the same set if null may
+ * flow between them. Elements are interned to consecutive ids, so that uniting
+ * sets and finding the set of an element take amortized near-constant time
+ * with union by rank and path compression. The members of each set form a
+ * cycle, so that they're enumerated without scanning the whole forest.
+ *
+ * Propagation merges sets on a single thread, so the forest isn't thread-safe.
+ */
+public class ComputationForest {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Map<IJavaElement, Integer> ids = new LinkedHashMap<>();
+
+	private IJavaElement[] elements = new IJavaElement[INITIAL_CAPACITY];
+
+	private int[] parents = new int[INITIAL_CAPACITY];
+
+	private int[] ranks = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The next member of the set of each id, the members of a set forming a
+	 * cycle.
+	 */
+	private int[] next = new int[INITIAL_CAPACITY];
+
+	/**
+	 * @return true if element wasn't in the forest yet, in which case it's now in
+	 *         a set of its own.
+	 */
+	public boolean add(final IJavaElement element) {
+		if (this.ids.containsKey(element))
+			return false;
+		final int id = this.ids.size();
+		if (id == this.parents.length) {
+			this.elements = Arrays.copyOf(this.elements, 2 * id);
+			this.parents = Arrays.copyOf(this.parents, 2 * id);
+			this.ranks = Arrays.copyOf(this.ranks, 2 * id);
+			this.next = Arrays.copyOf(this.next, 2 * id);
+		}
+		this.elements[id] = element;
+		this.parents[id] = id;
+		this.next[id] = id;
+		this.ids.put(element, id);
+		return true;
+	}
+
+	public boolean contains(final IJavaElement element) {
+		return this.ids.containsKey(element);
+	}
+
+	private int find(final int id) {
+		int root = id;
+		while (this.parents[root] != root)
+			root = this.parents[root];
+		// path compression.
+		for (int node = id; node != root;) {
+			final int parent = this.parents[node];
+			this.parents[node] = root;
+			node = parent;
+		}
+		return root;
+	}
+
+	/**
+	 * @return The elements in the forest.
+	 */
+	public Set<IJavaElement> getElements() {
+		return Collections.unmodifiableSet(this.ids.keySet());
+	}
+
+	private int getId(final IJavaElement element) {
+		final Integer ret = this.ids.get(element);
+		if (ret == null)
+			throw new IllegalArgumentException("Not in the computation forest: " + element); //$NON-NLS-1$
+		return ret;
+	}
+
+	/**
+	 * @param element An element in the forest.
+	 * @return The elements in the set of element.
+	 */
+	public Set<IJavaElement> getSet(final IJavaElement element) {
+		final int id = this.getId(element);
+		final Set<IJavaElement> ret = new LinkedHashSet<>();
+		int member = id;
+		do {
+			ret.add(this.elements[member]);
+			member = this.next[member];
+		} while (member != id);
+		return ret;
+	}
+
+	/**
+	 * @return The sets of the forest, each in the order its elements were added.
+	 */
+	public Set<Set<IJavaElement>> getSets() {
+		final Map<Integer, Set<IJavaElement>> sets = new LinkedHashMap<>();
+		for (int id = 0; id < this.ids.size(); id++)
+			sets.computeIfAbsent(this.find(id), k -> new LinkedHashSet<>()).add(this.elements[id]);
+		return new LinkedHashSet<>(sets.values());
+	}
+
+	public int size() {
+		return this.ids.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ComputationForest [elements=" + this.size() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Unites the sets of two elements in the forest.
+	 *
+	 * @return true if they were in different sets.
+	 */
+	public boolean union(final IJavaElement element1, final IJavaElement element2) {
+		int root1 = this.find(this.getId(element1));
+		int root2 = this.find(this.getId(element2));
+		if (root1 == root2)
+			return false;
+		// union by rank.
+		if (this.ranks[root1] > this.ranks[root2]) {
+			final int root = root1;
+			root1 = root2;
+			root2 = root;
+		}
+		this.parents[root1] = root2;
+		if (this.ranks[root1] == this.ranks[root2])
+			this.ranks[root2]++;
+		// splice the member cycles.
+		final int next1 = this.next[root1];
+		this.next[root1] = this.next[root2];
+		this.next[root2] = next1;
+		return true;
+	}
+}
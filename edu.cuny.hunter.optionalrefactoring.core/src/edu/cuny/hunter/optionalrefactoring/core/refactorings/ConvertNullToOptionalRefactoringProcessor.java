@@ -4,11 +4,17 @@ import static org.eclipse.jdt.ui.JavaElementLabels.ALL_FULLY_QUALIFIED;
 import static org.eclipse.jdt.ui.JavaElementLabels.getElementLabel;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.CoreException;
@@ -27,6 +33,10 @@ import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchEngine;
@@ -52,7 +62,10 @@ import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.descriptors.ConvertNullToOptionalRefactoringDescriptor;
 import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
 import edu.cuny.hunter.optionalrefactoring.core.utils.TimeCollector;
+import edu.cuny.hunter.optionalrefactoring.core.utils.TypeHierarchyCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -65,19 +78,124 @@ import edu.cuny.hunter.optionalrefactoring.core.utils.TimeCollector;
 @SuppressWarnings({ "restriction", "deprecation" })
 public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProcessor {
 
+	/**
+	 * A task run for each compilation unit by
+	 * {@link ConvertNullToOptionalRefactoringProcessor#forEachInParallel(List, UnitTask, IProgressMonitor)}.
+	 */
+	@FunctionalInterface
+	private static interface UnitTask<T> {
+		T apply(ICompilationUnit unit) throws CoreException;
+	}
+
 	@SuppressWarnings("unused")
 	private static final GroupCategorySet SET_CONVERT_NULL_TO_OPTIONAL = new GroupCategorySet(
 			new GroupCategory("edu.cuny.hunter.optionalrefactoring", //$NON-NLS-1$
 					Messages.CategoryName, Messages.CategoryDescription));
 
+	/**
+	 * Runs task for each unit on the common fork-join pool.
+	 *
+	 * @param units   Compilation units.
+	 * @param task    The task, which must be safe to run concurrently.
+	 * @param monitor Only checked for cancellation, as the tasks don't own it.
+	 * @return The results of task in the order of units.
+	 * @throws CoreException The failure of the first unit in order that failed.
+	 */
+	private static <T> List<T> forEachInParallel(final List<ICompilationUnit> units, final UnitTask<T> task,
+			final IProgressMonitor monitor) throws CoreException {
+		final List<ForkJoinTask<T>> tasks = new ArrayList<>(units.size());
+		for (final ICompilationUnit unit : units)
+			tasks.add(ForkJoinPool.commonPool().submit(() -> {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				return task.apply(unit);
+			}));
+
+		final List<T> ret = new ArrayList<>(units.size());
+		try {
+			for (final ForkJoinTask<T> t : tasks)
+				ret.add(Util.join(t));
+		} finally {
+			// don't start any more if one failed.
+			for (final ForkJoinTask<T> t : tasks)
+				t.cancel(false);
+		}
+		return ret;
+	}
+
+	private static List<ICompilationUnit> getSourceCompilationUnits(final IPackageFragmentRoot root)
+			throws JavaModelException {
+		final List<ICompilationUnit> ret = new ArrayList<>();
+		if (root.getKind() == IPackageFragmentRoot.K_SOURCE)
+			for (final IJavaElement child : root.getChildren())
+				ret.addAll(Arrays.asList(((IPackageFragment) child).getCompilationUnits()));
+		return ret;
+	}
+
+	/**
+	 * @param element A selected element.
+	 * @return The source compilation units containing element or contained in it.
+	 * @throws JavaModelException
+	 */
+	private static List<ICompilationUnit> getSourceCompilationUnits(final IJavaElement element)
+			throws JavaModelException {
+		final List<ICompilationUnit> ret = new ArrayList<>();
+		switch (element.getElementType()) {
+		case IJavaElement.JAVA_PROJECT:
+			for (final IPackageFragmentRoot root : ((IJavaProject) element).getPackageFragmentRoots())
+				ret.addAll(getSourceCompilationUnits(root));
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			ret.addAll(getSourceCompilationUnits((IPackageFragmentRoot) element));
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT:
+			ret.addAll(Arrays.asList(((IPackageFragment) element).getCompilationUnits()));
+			break;
+		default:
+			final ICompilationUnit icu = (ICompilationUnit) element.getAncestor(IJavaElement.COMPILATION_UNIT);
+			if (icu != null)
+				ret.add(icu);
+		}
+		return ret;
+	}
+
 	/**
 	 * For excluding AST parse time.
 	 */
 	private final TimeCollector excludedTimeCollector = new TimeCollector();
 
+	/**
+	 * For the time spent parsing on misses of the AST cache, including those
+	 * during propagation.
+	 */
+	private final TimeCollector parseTimeCollector = new TimeCollector();
+
+	/**
+	 * The ASTs shared by all harvesters and the change creation of this run.
+	 */
+	private final ASTCache astCache = new ASTCache(this.parseTimeCollector);
+
+	private final TypeHierarchyCache hierarchyCache = new TypeHierarchyCache();
+
+	private final MethodDeclarationCache declarationCache = new MethodDeclarationCache();
+
 	private final IJavaElement[] javaElements; // the input java model elements
 
-	private final IJavaSearchScope refactoringScope;
+	/**
+	 * The input elements in the working copy layer, if there is one.
+	 */
+	private IJavaElement[] layeredElements;
+
+	private final boolean layer;
+
+	private IJavaSearchScope refactoringScope;
+
+	private OccurrenceSearcher searcher;
+
+	/**
+	 * The working copies of the layer by their primary compilation units.
+	 */
+	private final Map<ICompilationUnit, ICompilationUnit> workingCopies = new LinkedHashMap<>();
 
 	private final RefactoringSettings settings;
 
@@ -98,7 +216,9 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		super(settings);
 		try {
 			this.javaElements = javaElements;
+			this.layer = layer;
 			this.refactoringScope = SearchEngine.createJavaSearchScope(javaElements);
+			this.searcher = new OccurrenceSearcher(this.refactoringScope, this.astCache);
 			this.settings = refactoringSettings;
 		} finally {
 			monitor.ifPresent(IProgressMonitor::done);
@@ -124,6 +244,15 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 					this.getJavaElements().length * 1000);
 			final RefactoringStatus status = new RefactoringStatus();
 
+			if (this.settings.indexesReferences()) {
+				final Set<ICompilationUnit> units = new LinkedHashSet<>();
+				for (final IJavaElement elem : this.getJavaElements())
+					for (final ICompilationUnit unit : getSourceCompilationUnits(elem))
+						units.add(this.inLayer(unit));
+				this.searcher.setIndex(ReferenceIndex.create(units, this.refactoringScope, this.astCache,
+						subMonitor.split(this.getJavaElements().length * 100)));
+			}
+
 			for (final IJavaElement elem : this.getJavaElements())
 				// here we merge the resulting RefactoringStatus from the process method with
 				// status
@@ -156,6 +285,14 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 
 			if (!status.hasError()) {
 			}
+			Util.LOGGER.fine(this.astCache.toString());
+			Util.LOGGER.fine(this.hierarchyCache.toString());
+			Util.LOGGER.fine(this.declarationCache.toString());
+			Util.LOGGER.fine(this.searcher.toString());
+			if (this.settings.indexesNullSites()) {
+				NullSiteIndex.getDefault().save();
+				Util.LOGGER.fine(NullSiteIndex.getDefault().toString());
+			}
 			return status;
 		} catch (
 
@@ -172,10 +309,16 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 			throws CoreException, OperationCanceledException {
 		try {
 			this.clearCaches();
+			this.astCache.clear();
+			this.hierarchyCache.clear();
+			this.declarationCache.clear();
+			this.searcher.clear();
 			this.getExcludedTimeCollector().clear();
+			this.getParseTimeCollector().clear();
 
 			final RefactoringStatus status = new RefactoringStatus();
 			pm.beginTask(Messages.CheckingPreconditions, 1);
+			status.merge(this.createWorkingCopyLayer(new SubProgressMonitor(pm, 1)));
 			return status;
 			// }
 		} catch (final Exception e) {
@@ -219,10 +362,16 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 
 			pm.beginTask(Messages.CreatingChange, count);
 
+			if (this.settings.createsChangesInParallel())
+				this.parseChangedUnits(pm);
+
 			for (final Entities entity : this.entities) {
 				for (final IJavaElement element : entity) {
 					final ICompilationUnit icu = (ICompilationUnit) element.getAncestor(IJavaElement.COMPILATION_UNIT);
-					entity.addRewrite(this.getCompilationUnitRewrite(icu, this.getCompilationUnit(icu, pm)), element);
+					// the changes apply to the primary compilation units.
+					entity.addRewrite(
+							this.getCompilationUnitRewrite(icu.getPrimary(), this.getCompilationUnit(icu, pm)),
+							element);
 					pm.worked(1);
 				}
 				entity.transform();
@@ -233,7 +382,7 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 					.filter(cu -> !manager.containsChangesIn(cu)).toArray(ICompilationUnit[]::new);
 
 			for (final ICompilationUnit cu : units) {
-				final CompilationUnit compilationUnit = this.getCompilationUnit(cu, pm);
+				final CompilationUnit compilationUnit = this.getCompilationUnit(this.inLayer(cu), pm);
 				this.manageCompilationUnit(manager, this.getCompilationUnitRewrite(cu, compilationUnit),
 						Optional.of(new SubProgressMonitor(pm, IProgressMonitor.UNKNOWN)));
 			}
@@ -248,24 +397,79 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		} finally {
 			pm.done();
 			this.clearCaches();
+			this.astCache.clear();
+			this.hierarchyCache.clear();
+			this.declarationCache.clear();
+			this.searcher.clear();
+			this.discardWorkingCopyLayer();
 		}
 	}
 
 	/**
-	 * Creates a working copy layer if necessary.
+	 * Creates a working copy layer if necessary. The source compilation units of
+	 * the input elements are opened as working copies of a private owner, whose
+	 * buffers are loaded once, from the editors' unsaved contents where there are
+	 * any. The analysis, the searches and the change creation of the run then read
+	 * these buffers instead of the file system.
 	 *
 	 * @param monitor the progress monitor to use
 	 * @return a status describing the outcome of the operation
+	 * @throws JavaModelException
 	 */
-	private RefactoringStatus createWorkingCopyLayer(final IProgressMonitor monitor) {
+	private RefactoringStatus createWorkingCopyLayer(final IProgressMonitor monitor) throws JavaModelException {
 		try {
-			monitor.beginTask(Messages.CheckingPreconditions, 1);
+			this.discardWorkingCopyLayer();
+			if (!this.layer && (this.settings == null || !this.settings.layersWorkingCopies())) {
+				monitor.beginTask(Messages.CheckingPreconditions, 1);
+				return new RefactoringStatus();
+			}
+			final Set<ICompilationUnit> units = new LinkedHashSet<>();
+			for (final IJavaElement elem : this.javaElements)
+				units.addAll(getSourceCompilationUnits(elem));
+			monitor.beginTask(Messages.CheckingPreconditions, units.size());
+
+			final WorkingCopyOwner owner = new WorkingCopyOwner() {
+			};
+			for (final ICompilationUnit unit : units)
+				this.workingCopies.put(unit, unit.getWorkingCopy(owner, new SubProgressMonitor(monitor, 1)));
+
+			this.layeredElements = new IJavaElement[this.javaElements.length];
+			for (int i = 0; i < this.javaElements.length; i++)
+				this.layeredElements[i] = this.inLayer(this.javaElements[i]);
+			this.refactoringScope = SearchEngine.createJavaSearchScope(this.layeredElements);
+			this.searcher = new OccurrenceSearcher(this.refactoringScope, this.astCache, owner);
+			this.hierarchyCache.setWorkingCopyOwner(owner);
 			return new RefactoringStatus();
 		} finally {
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Discards the working copy layer, if any, and goes back to the primary
+	 * compilation units.
+	 *
+	 * @throws JavaModelException
+	 */
+	private void discardWorkingCopyLayer() throws JavaModelException {
+		if (this.layeredElements == null)
+			return;
+		try {
+			for (final ICompilationUnit workingCopy : this.workingCopies.values())
+				workingCopy.discardWorkingCopy();
+		} finally {
+			this.workingCopies.clear();
+			this.layeredElements = null;
+			this.refactoringScope = SearchEngine.createJavaSearchScope(this.javaElements);
+			this.searcher = new OccurrenceSearcher(this.refactoringScope, this.astCache);
+			this.hierarchyCache.setWorkingCopyOwner(null);
+		}
+	}
+
+	public ASTCache getASTCache() {
+		return this.astCache;
+	}
+
 	@Override
 	protected Map<ICompilationUnit, CompilationUnitRewrite> getCompilationUnitToCompilationUnitRewriteMap() {
 		return this.compilationUnitToCompilationUnitRewriteMap;
@@ -283,17 +487,95 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		return this.entities;
 	}
 
+	/**
+	 * Obtains the AST of a unit that is seeded or changed by this processor, as
+	 * opposed to one reached by propagation, charging its parse to the excluded
+	 * time.
+	 *
+	 * @param icu     A compilation unit.
+	 * @param monitor
+	 * @return The cached binding-resolved AST of icu.
+	 */
+	private CompilationUnit getCompilationUnit(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		this.getExcludedTimeCollector().start();
+		try {
+			return this.astCache.getCompilationUnit(icu, monitor);
+		} finally {
+			this.getExcludedTimeCollector().stop();
+		}
+	}
+
+	/**
+	 * Obtains the AST that a selected member is seeded from. Unless the whole
+	 * compilation unit is already cached or reconciled by an open editor, only the
+	 * body enclosing member is parsed with bindings. The result isn't cached since
+	 * the bodies of the other members are missing from it, so the unit is only
+	 * parsed in full, through the cache, once seeding member found seeds that
+	 * propagation or the change creation follow into it.
+	 *
+	 * @param member  A method, field or initializer.
+	 * @param monitor
+	 * @return An AST of the compilation unit declaring member that is complete at
+	 *         least for member.
+	 * @throws JavaModelException
+	 */
+	private CompilationUnit getFocalCompilationUnit(final IMember member, final IProgressMonitor monitor)
+			throws JavaModelException {
+		final CompilationUnit available = this.astCache.getAvailable(member.getCompilationUnit());
+		if (available != null)
+			return available;
+		// only read, see getSeedingCompilationUnit().
+		final CompilationUnit shared = Util.getSharedCompilationUnit(member.getCompilationUnit());
+		if (shared != null)
+			return shared;
+		this.getExcludedTimeCollector().start();
+		try {
+			return Util.getFocalCompilationUnit(member, monitor);
+		} finally {
+			this.getExcludedTimeCollector().stop();
+		}
+	}
+
 	public TimeCollector getExcludedTimeCollector() {
 		return this.excludedTimeCollector;
 	}
 
+	/**
+	 * Obtains the AST that a compilation unit is seeded from, i.e., the cached AST
+	 * if there is one, or else the reconciled AST of an open editor, or else the
+	 * AST parsed through the cache. Seeding only visits the AST and resolves
+	 * bindings on it, so the editor's AST is neither modified nor annotated, and
+	 * the unit is then only parsed once propagation or the change creation reach
+	 * it.
+	 *
+	 * @param icu     A compilation unit.
+	 * @param monitor
+	 * @return A binding-resolved AST of icu.
+	 */
+	private CompilationUnit getSeedingCompilationUnit(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		final CompilationUnit available = this.astCache.getAvailable(icu);
+		if (available != null)
+			return available;
+		final CompilationUnit shared = Util.getSharedCompilationUnit(icu);
+		if (shared != null)
+			return shared;
+		return this.getCompilationUnit(icu, monitor);
+	}
+
 	@Override
 	public String getIdentifier() {
 		return ConvertNullToOptionalRefactoringDescriptor.REFACTORING_ID;
 	}
 
 	protected IJavaElement[] getJavaElements() {
-		return this.javaElements;
+		return this.layeredElements == null ? this.javaElements : this.layeredElements;
+	}
+
+	/**
+	 * @return The time spent parsing on misses of the AST cache.
+	 */
+	public TimeCollector getParseTimeCollector() {
+		return this.parseTimeCollector;
 	}
 
 	@Override
@@ -301,6 +583,60 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		return Messages.Name;
 	}
 
+	/**
+	 * Splits units into consecutive waves whose total source length fits the
+	 * budget of the AST cache, so that the ASTs of a wave that are parsed ahead of
+	 * processing it don't evict each other.
+	 *
+	 * @param units Compilation units.
+	 * @return The waves, in the order of units.
+	 * @throws JavaModelException
+	 */
+	private List<List<ICompilationUnit>> getWaves(final List<ICompilationUnit> units) throws JavaModelException {
+		final List<List<ICompilationUnit>> ret = new ArrayList<>();
+		List<ICompilationUnit> wave = new ArrayList<>();
+		long length = 0;
+		for (final ICompilationUnit unit : units) {
+			final int unitLength = Util.getSourceLength(unit);
+			if (!wave.isEmpty() && length + unitLength > this.astCache.getBudget()) {
+				ret.add(wave);
+				wave = new ArrayList<>();
+				length = 0;
+			}
+			wave.add(unit);
+			length += unitLength;
+		}
+		if (!wave.isEmpty())
+			ret.add(wave);
+		return ret;
+	}
+
+	/**
+	 * @param unit A compilation unit.
+	 * @return The working copy of unit in the working copy layer, or unit itself if
+	 *         it isn't layered.
+	 */
+	private ICompilationUnit inLayer(final ICompilationUnit unit) {
+		return this.workingCopies.getOrDefault(unit.getPrimary(), unit);
+	}
+
+	/**
+	 * @param element An element.
+	 * @return The corresponding element in the working copy layer, or element
+	 *         itself if it isn't layered.
+	 * @throws JavaModelException
+	 */
+	private IJavaElement inLayer(final IJavaElement element) throws JavaModelException {
+		final ICompilationUnit unit = (ICompilationUnit) element.getAncestor(IJavaElement.COMPILATION_UNIT);
+		if (unit == null)
+			return element;
+		final ICompilationUnit workingCopy = this.inLayer(unit);
+		if (element.equals(unit))
+			return workingCopy;
+		final IJavaElement[] found = workingCopy.findElements(element);
+		return found == null || found.length == 0 ? element : found[0];
+	}
+
 	@Override
 	public boolean isApplicable() throws CoreException {
 		// return
@@ -311,6 +647,45 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		return true;
 	}
 
+	/**
+	 * Decides whether a compilation unit needs a binding-resolved parse at all. A
+	 * lexical scan comes first, or its result recorded in the
+	 * {@link NullSiteIndex}. A unit with a null literal certainly produces seeds,
+	 * while the other units that pass are searched for seeds in the AST of an open
+	 * editor or in a binding-free parse.
+	 *
+	 * @param icu     A compilation unit.
+	 * @param monitor
+	 * @return false only if icu certainly cannot produce seeds.
+	 * @throws JavaModelException
+	 */
+	private boolean mayProduceSeeds(final ICompilationUnit icu, final IProgressMonitor monitor)
+			throws JavaModelException {
+		final int sites = this.settings.indexesNullSites() ? NullSiteIndex.getDefault().getSites(icu)
+				: NullPreFilter.scan(icu, NullPreFilter.getWantedSites(this.settings));
+		if (!NullPreFilter.mayProduceSeeds(sites, this.settings))
+			return false;
+		if ((sites & NullPreFilter.NULL_LITERALS) != 0)
+			return true;
+		// no point in parsing it again.
+		final CompilationUnit available = this.astCache.getAvailable(icu);
+		if (available != null)
+			return NullSeeder.hasSeeds(available, this.settings);
+		// only read, so it may belong to an editor.
+		final CompilationUnit shared = Util.getSharedCompilationUnit(icu);
+		if (shared != null)
+			return NullSeeder.hasSeeds(shared, this.settings);
+		final CompilationUnit syntax;
+		this.getExcludedTimeCollector().start();
+		try {
+			syntax = Util.getSyntacticCompilationUnit(icu, monitor);
+		} finally {
+			// other units may still be parsed concurrently.
+			this.getExcludedTimeCollector().stop();
+		}
+		return NullSeeder.hasSeeds(syntax, this.settings);
+	}
+
 	@Override
 	public RefactoringParticipant[] loadParticipants(final RefactoringStatus status,
 			final SharableParticipants sharedParticipants) throws CoreException {
@@ -318,15 +693,62 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	}
 
 	/**
-	 * @param icu        an ICompilationUnit
+	 * Parses the compilation units changed by the entities that are no longer in
+	 * the AST cache on all cores, each with its own parser, as long as they fit
+	 * half of the budget of the cache. The changes themselves are created on the
+	 * calling thread, since rewriting resolves bindings lazily, e.g., while
+	 * collecting the imports of removed nodes, and the ASTs of a batch share their
+	 * lookup environment.
+	 *
+	 * @param monitor Only checked for cancellation while the units are parsed.
+	 * @throws CoreException
+	 */
+	private void parseChangedUnits(final IProgressMonitor monitor) throws CoreException {
+		final Set<ICompilationUnit> changedUnits = new LinkedHashSet<>();
+		for (final Entities entity : this.entities)
+			for (final IJavaElement element : entity)
+				changedUnits.add((ICompilationUnit) element.getAncestor(IJavaElement.COMPILATION_UNIT));
+
+		final List<ICompilationUnit> parsedUnits = new ArrayList<>();
+		long length = 0;
+		for (final ICompilationUnit unit : changedUnits)
+			if (!this.astCache.contains(unit)) {
+				length += Util.getSourceLength(unit);
+				// the others are parsed when they're rewritten.
+				if (length > this.astCache.getBudget() / 2)
+					break;
+				parsedUnits.add(unit);
+			}
+		forEachInParallel(parsedUnits, unit -> this.getCompilationUnit(unit, null), monitor);
+	}
+
+	/**
+	 * @param unit       an ICompilationUnit
+	 * @param subMonitor
+	 * @return the RefactoringStatus from the harvester
+	 * @throws CoreException
+	 */
+	private RefactoringStatus process(final ICompilationUnit unit, final SubMonitor subMonitor) throws CoreException {
+		final ICompilationUnit icu = this.inLayer(unit);
+		if (!this.mayProduceSeeds(icu, subMonitor)) {
+			subMonitor.worked(1);
+			return RefactoringStatus.createWarningStatus(Messages.NoNullsHaveBeenFound);
+		}
+		final CompilationUnit compilationUnit = this.getSeedingCompilationUnit(icu, subMonitor.split(1));
+		return this.process(icu, compilationUnit, subMonitor);
+	}
+
+	/**
+	 * @param icu             an ICompilationUnit
+	 * @param compilationUnit the binding-resolved AST of icu
 	 * @param subMonitor
 	 * @return the RefactoringStatus from the harvester
 	 * @throws CoreException
 	 */
-	private RefactoringStatus process(final ICompilationUnit icu, final SubMonitor subMonitor) throws CoreException {
-		final CompilationUnit compilationUnit = this.getCompilationUnit(icu, subMonitor.split(1));
+	private RefactoringStatus process(final ICompilationUnit icu, final CompilationUnit compilationUnit,
+			final SubMonitor subMonitor) throws CoreException {
 		final RefactorableHarvester harvester = new RefactorableHarvester(icu, compilationUnit, this.refactoringScope,
-				this.settings, subMonitor);
+				this.settings, subMonitor, this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
 		final RefactoringStatus status = harvester.harvestRefactorableContexts();
 		this.entities.addAll(harvester.getEntities());
 
@@ -340,9 +762,9 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 * @throws CoreException
 	 */
 	private RefactoringStatus process(final IField field, final SubMonitor subMonitor) throws CoreException {
-		final CompilationUnit compilationUnit = this.getCompilationUnit(field.getTypeRoot(), subMonitor.split(1));
+		final CompilationUnit compilationUnit = this.getFocalCompilationUnit(field, subMonitor.split(1));
 		final RefactorableHarvester harvester = new RefactorableHarvester(field, compilationUnit, this.refactoringScope,
-				this.settings, subMonitor);
+				this.settings, subMonitor, this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
 		final RefactoringStatus status = harvester.harvestRefactorableContexts();
 		this.entities.addAll(harvester.getEntities());
 		return status;
@@ -356,9 +778,10 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 */
 	private RefactoringStatus process(final IInitializer initializer, final SubMonitor subMonitor)
 			throws CoreException {
-		final CompilationUnit compilationUnit = this.getCompilationUnit(initializer.getTypeRoot(), subMonitor.split(1));
+		final CompilationUnit compilationUnit = this.getFocalCompilationUnit(initializer, subMonitor.split(1));
 		final RefactorableHarvester harvester = new RefactorableHarvester(initializer, compilationUnit,
-				this.refactoringScope, this.settings, subMonitor);
+				this.refactoringScope, this.settings, subMonitor, this.astCache, this.searcher,
+				this.hierarchyCache, this.declarationCache);
 		final RefactoringStatus status = harvester.harvestRefactorableContexts();
 		this.entities.addAll(harvester.getEntities());
 		return status;
@@ -373,6 +796,12 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 */
 	private RefactoringStatus process(final IJavaProject project, final SubMonitor subMonitor) throws CoreException {
 		final IPackageFragmentRoot[] roots = project.getPackageFragmentRoots();
+		if (this.settings.batchesParsing()) {
+			final List<ICompilationUnit> units = new ArrayList<>();
+			for (final IPackageFragmentRoot root : roots)
+				units.addAll(getSourceCompilationUnits(root));
+			return this.process(units, subMonitor);
+		}
 		final RefactoringStatus status = new RefactoringStatus();
 		for (final IPackageFragmentRoot root : roots)
 			status.merge(this.process(root, subMonitor));
@@ -386,9 +815,9 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 * @throws CoreException
 	 */
 	private RefactoringStatus process(final IMethod method, final SubMonitor subMonitor) throws CoreException {
-		final CompilationUnit compilationUnit = this.getCompilationUnit(method.getTypeRoot(), subMonitor.split(1));
+		final CompilationUnit compilationUnit = this.getFocalCompilationUnit(method, subMonitor.split(1));
 		final RefactorableHarvester harvester = new RefactorableHarvester(method, compilationUnit, this.refactoringScope,
-				this.settings, subMonitor);
+				this.settings, subMonitor, this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
 		final RefactoringStatus status = harvester.harvestRefactorableContexts();
 		this.entities.addAll(harvester.getEntities());
 		return status;
@@ -403,6 +832,10 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	private RefactoringStatus process(final IPackageFragment fragment, final SubMonitor subMonitor)
 			throws CoreException {
 		final ICompilationUnit[] units = fragment.getCompilationUnits();
+		if (this.settings.batchesParsing())
+			return this.process(Arrays.asList(units), subMonitor);
+		if (this.settings.seedsInParallel())
+			return this.processInParallel(Arrays.asList(units), subMonitor);
 		final RefactoringStatus status = new RefactoringStatus();
 		for (final ICompilationUnit unit : units)
 			status.merge(this.process(unit, subMonitor));
@@ -418,6 +851,8 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 */
 	private RefactoringStatus process(final IPackageFragmentRoot root, final SubMonitor subMonitor)
 			throws CoreException {
+		if (this.settings.batchesParsing())
+			return this.process(getSourceCompilationUnits(root), subMonitor);
 		final RefactoringStatus status = new RefactoringStatus();
 		final IJavaElement[] children = root.getChildren();
 		for (final IJavaElement child : children)
@@ -425,6 +860,114 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 		return status;
 	}
 
+	/**
+	 * Parses the given compilation units of a single project in batches so that
+	 * bindings are shared between the units of a batch, and harvests the ASTs in
+	 * the order of units. Each batch is a wave of units whose ASTs fit the budget
+	 * of the AST cache, to which they're handed as they're parsed, and is
+	 * harvested before the next one is parsed. Units that cannot produce seeds are
+	 * not parsed with bindings at all.
+	 *
+	 * @param units      Source compilation units belonging to the same project.
+	 * @param subMonitor
+	 * @return The merged RefactoringStatus from the harvesters
+	 * @throws CoreException
+	 */
+	private RefactoringStatus process(final List<ICompilationUnit> units, final SubMonitor subMonitor)
+			throws CoreException {
+		final RefactoringStatus status = new RefactoringStatus();
+		final List<ICompilationUnit> layeredUnits = new ArrayList<>(units.size());
+		for (final ICompilationUnit primary : units)
+			layeredUnits.add(this.inLayer(primary));
+		// the batch shares its lookup environment, so only the pre-filter can run concurrently.
+		final List<Boolean> filter = this.settings.seedsInParallel()
+				? forEachInParallel(layeredUnits, unit -> this.mayProduceSeeds(unit, null), subMonitor)
+				: null;
+		// the units that may produce seeds, in order.
+		final List<ICompilationUnit> seededUnits = new ArrayList<>(units.size());
+		for (int i = 0; i < layeredUnits.size(); i++)
+			if (filter == null ? this.mayProduceSeeds(layeredUnits.get(i), subMonitor) : filter.get(i))
+				seededUnits.add(layeredUnits.get(i));
+			else
+				status.merge(RefactoringStatus.createWarningStatus(Messages.NoNullsHaveBeenFound));
+
+		for (final List<ICompilationUnit> wave : this.getWaves(seededUnits)) {
+			final List<ICompilationUnit> parsedUnits = new ArrayList<>(wave.size());
+			for (final ICompilationUnit unit : wave)
+				// e.g., reached by propagation from an earlier unit.
+				if (!this.astCache.contains(unit))
+					parsedUnits.add(unit);
+
+			if (!parsedUnits.isEmpty()) {
+				final ASTParser parser = ASTParser.newParser(AST.JLS8);
+				parser.setProject(parsedUnits.get(0).getJavaProject());
+				parser.setResolveBindings(true);
+				// null for primary compilation units.
+				parser.setWorkingCopyOwner(parsedUnits.get(0).getOwner());
+				final ASTRequestor requestor = new ASTRequestor() {
+					@Override
+					public void acceptAST(final ICompilationUnit source, final CompilationUnit ast) {
+						// harvested below, once the lookup environment of the batch is gone.
+						ConvertNullToOptionalRefactoringProcessor.this.astCache.put(source, ast);
+					}
+				};
+				this.getExcludedTimeCollector().start();
+				try {
+					parser.createASTs(parsedUnits.toArray(new ICompilationUnit[parsedUnits.size()]), new String[0],
+							requestor, subMonitor.split(wave.size()));
+				} finally {
+					this.getExcludedTimeCollector().stop();
+				}
+			}
+
+			for (final ICompilationUnit unit : wave)
+				// parsed again only if propagating from an earlier unit of the wave evicted it.
+				status.merge(this.process(unit, this.getCompilationUnit(unit, subMonitor), subMonitor));
+		}
+		return status;
+	}
+
+	/**
+	 * Pre-filters and parses the given compilation units on all cores, each with
+	 * its own parser, and then harvests them one at a time in the order of units.
+	 * Seeding and propagation resolve bindings on the ASTs of other units that
+	 * are shared through the caches, so they stay on the calling thread. The units
+	 * are parsed in waves that fit the budget of the AST cache, which is the only
+	 * one retaining their ASTs, and each wave is harvested before the next one is
+	 * parsed.
+	 *
+	 * @param units      Compilation units.
+	 * @param subMonitor
+	 * @return The merged RefactoringStatus from the harvesters
+	 * @throws CoreException
+	 */
+	private RefactoringStatus processInParallel(final List<ICompilationUnit> units, final SubMonitor subMonitor)
+			throws CoreException {
+		final List<ICompilationUnit> layeredUnits = new ArrayList<>(units.size());
+		for (final ICompilationUnit unit : units)
+			layeredUnits.add(this.inLayer(unit));
+
+		final RefactoringStatus status = new RefactoringStatus();
+		for (final List<ICompilationUnit> wave : this.getWaves(layeredUnits)) {
+			final List<Boolean> parsed = forEachInParallel(wave, icu -> {
+				if (!this.mayProduceSeeds(icu, null))
+					return false;
+				this.getCompilationUnit(icu, null);
+				return true;
+			}, subMonitor);
+			subMonitor.worked(wave.size());
+
+			for (int i = 0; i < wave.size(); i++)
+				if (parsed.get(i))
+					// parsed again only if propagating from an earlier unit of the wave evicted it.
+					status.merge(this.process(wave.get(i), this.getCompilationUnit(wave.get(i), subMonitor),
+							subMonitor));
+				else
+					status.merge(RefactoringStatus.createWarningStatus(Messages.NoNullsHaveBeenFound));
+		}
+		return status;
+	}
+
 	/**
 	 * @param type       an IType
 	 * @param subMonitor
@@ -432,9 +975,10 @@ public class ConvertNullToOptionalRefactoringProcessor extends RefactoringProces
 	 * @throws CoreException
 	 */
 	private RefactoringStatus process(final IType type, final SubMonitor subMonitor) throws CoreException {
-		final CompilationUnit compilationUnit = this.getCompilationUnit(type.getTypeRoot(), subMonitor.split(1));
+		final CompilationUnit compilationUnit = this.getSeedingCompilationUnit(type.getCompilationUnit(),
+				subMonitor.split(1));
 		final RefactorableHarvester harvester = new RefactorableHarvester(type, compilationUnit, this.refactoringScope,
-				this.settings, subMonitor);
+				this.settings, subMonitor, this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
 		final RefactoringStatus status = harvester.harvestRefactorableContexts();
 		this.entities.addAll(harvester.getEntities());
 		return status;
@@ -0,0 +1,151 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+
+import edu.cuny.hunter.optionalrefactoring.core.analysis.Action;
+import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
+
+/**
+ * A run-scoped cache of what propagation through method calls looks up in
+ * method declarations. Every argument flowing into a call of a method leads to
+ * the same formal parameters of the method and its overriding methods, and
+ * every descent into a method leads to the same return statements, so both are
+ * found once per method and replayed for every further incoming edge.
+ *
+ * These aren't flow summaries of the methods. The expressions of the return
+ * statements are still walked for every descent into a method.
+ *
+ * The return statements of a declaration are stored as a property of its node,
+ * so they are released together with the AST.
+ */
+public class MethodDeclarationCache {
+
+	/**
+	 * A formal parameter reached through a call, together with the outcome of its
+	 * precondition checks. Only the position of its declaration is kept, so that
+	 * summaries don't retain ASTs beyond the eviction of the {@link ASTCache}.
+	 */
+	static class Formal {
+		final IJavaElement element;
+		final ICompilationUnit unit;
+		final ISourceRange range;
+		/**
+		 * The type and position of the node reported if the checks fail.
+		 */
+		final int contextType;
+		final ISourceRange contextRange;
+		final EnumSet<PreconditionFailure> failures;
+		final Action action;
+
+		Formal(final IJavaElement element, final SingleVariableDeclaration node, final ASTNode context,
+				final EnumSet<PreconditionFailure> failures, final Action action) {
+			this.element = element;
+			this.unit = (ICompilationUnit) ((CompilationUnit) node.getRoot()).getJavaElement();
+			this.range = Util.getSourceRange(node);
+			this.contextType = context.getNodeType();
+			this.contextRange = Util.getSourceRange(context);
+			this.failures = failures;
+			this.action = action;
+		}
+	}
+
+	private static final String RETURNS = MethodDeclarationCache.class.getName() + ".returns"; //$NON-NLS-1$
+
+	/**
+	 * The formals of each top-most method by parameter position.
+	 */
+	private final Map<IMethod, Map<Integer, List<Formal>>> formals = new HashMap<>();
+
+	private int hits;
+
+	private int misses;
+
+	public synchronized void clear() {
+		this.formals.clear();
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * @param top         A top-most source method.
+	 * @param paramNumber The position of a parameter.
+	 * @return The formals at paramNumber of top and of the methods overriding it,
+	 *         or <code>null</code> if they haven't been summarized yet.
+	 */
+	synchronized List<Formal> getFormals(final IMethod top, final int paramNumber) {
+		final Map<Integer, List<Formal>> methodFormals = this.formals.get(top);
+		final List<Formal> ret = methodFormals == null ? null : methodFormals.get(paramNumber);
+		if (ret == null)
+			this.misses++;
+		else
+			this.hits++;
+		return ret;
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @param decl A method declaration.
+	 * @return The return statements of decl, including those of its local and
+	 *         anonymous classes, collecting them on first use.
+	 */
+	@SuppressWarnings("unchecked")
+	List<ReturnStatement> getReturns(final MethodDeclaration decl) {
+		synchronized (decl.getRoot()) {
+			List<ReturnStatement> ret = (List<ReturnStatement>) decl.getProperty(RETURNS);
+			synchronized (this) {
+				if (ret != null) {
+					this.hits++;
+					return ret;
+				}
+				this.misses++;
+			}
+			final List<ReturnStatement> returns = new ArrayList<>();
+			decl.accept(new ASTVisitor() {
+				@Override
+				public boolean visit(final ReturnStatement node) {
+					returns.add(node);
+					return super.visit(node);
+				}
+			});
+			ret = Collections.unmodifiableList(returns);
+			decl.setProperty(RETURNS, ret);
+			return ret;
+		}
+	}
+
+	synchronized void putFormals(final IMethod top, final int paramNumber, final List<Formal> formals) {
+		this.formals.computeIfAbsent(top, k -> new HashMap<>()).put(paramNumber,
+				Collections.unmodifiableList(formals));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MethodDeclarationCache [methods=" + this.formals.size() + ", hits=" + this.hits + ", misses=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ this.misses + "]"; //$NON-NLS-1$
+	}
+}
@@ -1,7 +1,9 @@
 package edu.cuny.hunter.optionalrefactoring.core.refactorings;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -15,6 +17,7 @@ import org.eclipse.jdt.core.dom.ArrayAccess;
 import org.eclipse.jdt.core.dom.ArrayInitializer;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConditionalExpression;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldAccess;
@@ -26,12 +29,9 @@ import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.SuperFieldAccess;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
-import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
-import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.MethodDeclarationMatch;
 import org.eclipse.jdt.core.search.SearchMatch;
-import org.eclipse.jdt.core.search.SearchParticipant;
-import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 
@@ -41,6 +41,11 @@ import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterASTException;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterException;
+import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
+import edu.cuny.hunter.optionalrefactoring.core.refactorings.MethodDeclarationCache.Formal;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTNodeIndex;
+import edu.cuny.hunter.optionalrefactoring.core.utils.TypeHierarchyCache;
 import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 
 /**
@@ -53,13 +58,19 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 	final RefactoringSettings settings;
 	final IProgressMonitor monitor;
 	final IJavaSearchScope scope;
+	final ASTCache astCache;
+	final OccurrenceSearcher searcher;
+	final TypeHierarchyCache hierarchyCache;
+	final MethodDeclarationCache declarationCache;
 	final Set<IJavaElement> candidates = new LinkedHashSet<>();
 	private final Set<Instance> instances = new LinkedHashSet<>();
 	private final Set<Instance> instanceQueue = new LinkedHashSet<>();
 
 	@SuppressWarnings("serial")
 	N2ONodeProcessor(final IJavaElement element, final ASTNode node, final RefactoringSettings settings, final IProgressMonitor monitor,
-			final IJavaSearchScope scope) throws HarvesterException {
+			final IJavaSearchScope scope, final ASTCache astCache, final OccurrenceSearcher searcher,
+			final TypeHierarchyCache hierarchyCache, final MethodDeclarationCache declarationCache)
+			throws HarvesterException {
 		super(node);
 		this.rootElement = element;
 		if (!node.getAST().hasResolvedBindings())
@@ -67,6 +78,10 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 			this.settings = settings;
 			this.monitor = monitor;
 			this.scope = scope;
+			this.astCache = astCache;
+			this.searcher = searcher;
+			this.hierarchyCache = hierarchyCache;
+			this.declarationCache = declarationCache;
 	}
 
 	void addCandidate(final IJavaElement element, final ASTNode node, final EnumSet<PreconditionFailure> pf,
@@ -75,7 +90,7 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 		 * dump the instance queue into instances, with the appropriate resolved element
 		 */
 		this.instances.addAll(this.instanceQueue.stream()
-				.map(instance -> new Instance(element, instance.node, instance.failures, instance.action))
+				.map(instance -> new Instance(element, instance))
 				.collect(Collectors.toSet()));
 		this.instanceQueue.clear();
 		this.candidates.add(element);
@@ -96,7 +111,7 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 		 * dump the instance queue into instances, with the appropriate resolved element
 		 */
 		this.instances.addAll(this.instanceQueue.stream()
-				.map(instance -> new Instance(failingElement, instance.node, instance.failures, instance.action))
+				.map(instance -> new Instance(failingElement, instance))
 				.collect(Collectors.toSet()));
 		this.addInstance(failingElement, node, pf, Action.NIL);
 		throw new HarvesterASTException(node, this.candidates, this.instances);
@@ -298,38 +313,58 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 			this.addInstance(element, node, pf, action);
 	}
 
+	/**
+	 * Processes the formal parameters at paramNumber of correspondingMethod and of
+	 * the source methods overriding it, which are looked up in the ripple method
+	 * index rather than searched for. The formals are summarized once per run and
+	 * replayed for any further argument flowing into the same position.
+	 *
+	 * @param correspondingMethod A top-most source method.
+	 * @param paramNumber         The position of the parameter.
+	 * @throws CoreException
+	 */
 	void findFormalsForVariable(final IMethod correspondingMethod, final int paramNumber) throws CoreException {
-
-		final SearchPattern pattern = SearchPattern.createPattern(correspondingMethod,
-				IJavaSearchConstants.DECLARATIONS, SearchPattern.R_EXACT_MATCH);
-
-		this.findParameters(paramNumber, pattern);
+		final List<Formal> summary = this.declarationCache.getFormals(correspondingMethod, paramNumber);
+		if (summary != null) {
+			for (final Formal formal : summary)
+				this.process(formal);
+			return;
+		}
+		final List<Formal> formals = new ArrayList<>();
+		for (final IMethod method : this.hierarchyCache.getRippleMethods(correspondingMethod, this.monitor))
+			// as if the declarations in the scope had been searched for.
+			if (this.scope.encloses(method))
+				formals.addAll(this.processFormals(method, paramNumber, method.getNameRange().getOffset()));
+		this.declarationCache.putFormals(correspondingMethod, paramNumber, formals);
 	}
 
-	void findParameters(final int paramNumber, final SearchPattern pattern) throws CoreException {
+	void findParameters(final int paramNumber, final IMethod method, final int limitTo) throws CoreException {
+		this.searcher.search(method, limitTo, this.createParameterRequestor(paramNumber), null);
+	}
 
-		final SearchRequestor requestor = new SearchRequestor() {
+	/**
+	 * @param paramNumber The position of the parameter.
+	 * @return A requestor processing the parameter at paramNumber of matched
+	 *         method declarations, and the argument at paramNumber of matched
+	 *         invocations.
+	 */
+	private SearchRequestor createParameterRequestor(final int paramNumber) {
+		return new SearchRequestor() {
 
 			@Override
 			public void acceptSearchMatch(final SearchMatch match) throws CoreException {
 				if (match.getAccuracy() == SearchMatch.A_ACCURATE && !match.isInsideDocComment()) {
 					final IJavaElement elem = (IJavaElement) match.getElement();
-					final ASTNode node = Util.getASTNode(elem, N2ONodeProcessor.this.monitor);
+					if (match instanceof MethodDeclarationMatch) {
+						N2ONodeProcessor.this.processFormals(elem, paramNumber, match.getOffset());
+						return;
+					}
+					final ASTNode node = Util.getASTNode(elem, N2ONodeProcessor.this.astCache,
+							N2ONodeProcessor.this.monitor);
 					final ParameterProcessingVisitor visitor = new ParameterProcessingVisitor(paramNumber,
 							match.getOffset());
-					node.accept(visitor);
-					for (final SingleVariableDeclaration svd : visitor.getParameters()) {
-						final IJavaElement element = Util.resolveElement(svd);
-						final EnumSet<PreconditionFailure> pf = PreconditionFailure.check(svd, element,
-								N2ONodeProcessor.this.settings);
-						final Action action = Action.infer(svd, element, pf, N2ONodeProcessor.this.settings);
-						if (pf.isEmpty())
-							N2ONodeProcessor.this.addCandidate(element, svd, pf, action);
-						else if (pf.stream().anyMatch(f -> f.getSeverity(N2ONodeProcessor.this.settings) >= RefactoringStatus.ERROR))
-							N2ONodeProcessor.this.endProcessing(element, node, pf);
-						else
-							N2ONodeProcessor.this.addInstance(element, svd, pf, action);
-					}
+					visitor.process(node);
+					N2ONodeProcessor.this.process(visitor.getParameters(), node);
 					for (final Object element2 : visitor.getExpressions()) {
 						final Expression exp = (Expression) element2;
 						N2ONodeProcessor.this.processDescent(exp);
@@ -337,10 +372,6 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 				}
 			}
 		};
-
-		final SearchEngine searchEngine = new SearchEngine();
-		searchEngine.search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, this.scope,
-				requestor, null);
 	}
 
 	public Set<IJavaElement> getCandidates() {
@@ -351,6 +382,42 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 		return this.instances;
 	}
 
+	/**
+	 * Replays a summarized formal, finding its nodes again in the AST of its unit.
+	 */
+	private void process(final Formal formal) throws HarvesterException {
+		// where it was summarized, unless the complete AST has been cached since.
+		CompilationUnit root = this.astCache.getDeclarations(formal.unit, this.monitor);
+		ASTNode node = ASTNodeIndex.of(root).find(formal.range.getOffset(), formal.range.getLength(),
+				ASTNode.SINGLE_VARIABLE_DECLARATION);
+		if (node == null) {
+			// e.g., a parameter of a local or anonymous class.
+			root = this.astCache.getCompilationUnit(formal.unit, this.monitor);
+			node = ASTNodeIndex.of(root).find(formal.range.getOffset(), formal.range.getLength(),
+					ASTNode.SINGLE_VARIABLE_DECLARATION);
+		}
+		if (node == null)
+			throw new HarvesterASTException(Messages.Harvester_ASTNodeError + formal.element, root);
+		final ASTNode context = ASTNodeIndex.of(root).find(formal.contextRange.getOffset(),
+				formal.contextRange.getLength(), formal.contextType);
+		this.process(formal, (SingleVariableDeclaration) node, context == null ? root : context);
+	}
+
+	/**
+	 * @param formal  A formal parameter.
+	 * @param node    The declaration of formal.
+	 * @param context The node reported if the checks of formal fail.
+	 */
+	private void process(final Formal formal, final SingleVariableDeclaration node, final ASTNode context)
+			throws HarvesterASTException {
+		if (formal.failures.isEmpty())
+			this.addCandidate(formal.element, node, formal.failures, formal.action);
+		else if (formal.failures.stream().anyMatch(f -> f.getSeverity(this.settings) >= RefactoringStatus.ERROR))
+			this.endProcessing(formal.element, context, formal.failures);
+		else
+			this.addInstance(formal.element, node, formal.failures, formal.action);
+	}
+
 	private void process(final Name node) throws HarvesterException {
 		final IJavaElement element = Util.resolveElement(node);
 		final EnumSet<PreconditionFailure> pf = PreconditionFailure.check(node, element, this.settings);
@@ -362,4 +429,49 @@ abstract class N2ONodeProcessor extends ASTNodeProcessor {
 		else
 			this.addInstance(element, node, pf, action);
 	}
+
+	/**
+	 * Processes formal parameters, summarizing them for later replay.
+	 *
+	 * @param parameters Formal parameters.
+	 * @param context    The node reported if their checks fail.
+	 * @return The formals of parameters together with the outcome of their
+	 *         precondition checks.
+	 * @throws HarvesterException
+	 */
+	private List<Formal> process(final Set<SingleVariableDeclaration> parameters, final ASTNode context)
+			throws HarvesterException {
+		final List<Formal> ret = new ArrayList<>();
+		for (final SingleVariableDeclaration svd : parameters) {
+			final IJavaElement element = Util.resolveElement(svd);
+			final EnumSet<PreconditionFailure> pf = PreconditionFailure.check(svd, element, this.settings);
+			final Action action = Action.infer(svd, element, pf, this.settings);
+			final Formal formal = new Formal(element, svd, context, pf, action);
+			ret.add(formal);
+			this.process(formal, svd, context);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param method      A method declared in source.
+	 * @param paramNumber The position of the parameter.
+	 * @param offset      The position of the name of method.
+	 * @return The formals at paramNumber of method, which have been processed.
+	 * @throws CoreException
+	 */
+	private List<Formal> processFormals(final IJavaElement method, final int paramNumber, final int offset)
+			throws CoreException {
+		// declarations don't need the method bodies.
+		ASTNode node = Util.getDeclarationASTNode(method, this.astCache, this.monitor);
+		ParameterProcessingVisitor visitor = new ParameterProcessingVisitor(paramNumber, offset);
+		visitor.process(node);
+		// unless they are local or anonymous.
+		if (visitor.getParameters().isEmpty()) {
+			node = Util.getASTNode(method, this.astCache, this.monitor);
+			visitor = new ParameterProcessingVisitor(paramNumber, offset);
+			visitor.process(node);
+		}
+		return this.process(visitor.getParameters(), node);
+	}
 }
@@ -0,0 +1,162 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.IJavaElement;
+
+import edu.cuny.hunter.optionalrefactoring.core.analysis.Entities.Instance;
+
+/**
+ * The null flow graph of a harvester in
+ * {@link edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings.Mode#FLOW_GRAPH}
+ * mode. Its nodes are the fields, locals, parameters and methods that null can
+ * flow to, and its edges connect each node to the type-dependent nodes found
+ * among its occurrences. The instances found along the way, with their actions
+ * and precondition failures, label the nodes they belong to.
+ *
+ * The connected components are maintained with a union-find as edges are
+ * added, so that the harvester can tell whether the component of a node was
+ * already ruled out by a failed node before searching for its occurrences. Once
+ * the graph is complete, the refactorable sets are its connected components
+ * that contain no failed node.
+ */
+class NullFlowGraph {
+
+	/**
+	 * The nodes in the order they were added.
+	 */
+	private final Map<IJavaElement, Integer> nodes = new LinkedHashMap<>();
+
+	/**
+	 * The parent of each node in the union-find over the edges.
+	 */
+	private int[] parents = new int[16];
+
+	/**
+	 * The size of the component of each root.
+	 */
+	private int[] sizes = new int[16];
+
+	/**
+	 * Whether the component of each root contains a failed node.
+	 */
+	private boolean[] failedRoots = new boolean[16];
+
+	private int edges;
+
+	private final Set<IJavaElement> failed = new LinkedHashSet<>();
+
+	private final Map<IJavaElement, Set<Instance>> instances = new HashMap<>();
+
+	/**
+	 * @param from A node.
+	 * @param to   A type-dependent element found among the occurrences of from.
+	 * @return true if to wasn't a node yet.
+	 */
+	boolean addEdge(final IJavaElement from, final IJavaElement to) {
+		final boolean ret = this.addNode(to);
+		this.edges++;
+		int root1 = this.find(this.nodes.get(from));
+		int root2 = this.find(this.nodes.get(to));
+		if (root1 != root2) {
+			// union by size.
+			if (this.sizes[root1] < this.sizes[root2]) {
+				final int root = root1;
+				root1 = root2;
+				root2 = root;
+			}
+			this.parents[root2] = root1;
+			this.sizes[root1] += this.sizes[root2];
+			this.failedRoots[root1] |= this.failedRoots[root2];
+		}
+		return ret;
+	}
+
+	void addInstances(final Set<Instance> instances) {
+		for (final Instance instance : instances)
+			this.instances.computeIfAbsent(instance.element, k -> new LinkedHashSet<>()).add(instance);
+	}
+
+	/**
+	 * @return true if element wasn't a node yet.
+	 */
+	boolean addNode(final IJavaElement element) {
+		if (this.nodes.containsKey(element))
+			return false;
+		final int node = this.nodes.size();
+		if (node == this.parents.length) {
+			this.parents = Arrays.copyOf(this.parents, 2 * node);
+			this.sizes = Arrays.copyOf(this.sizes, 2 * node);
+			this.failedRoots = Arrays.copyOf(this.failedRoots, 2 * node);
+		}
+		this.parents[node] = node;
+		this.sizes[node] = 1;
+		this.nodes.put(element, node);
+		return true;
+	}
+
+	/**
+	 * Marks a node whose occurrences can't be refactored, ruling out its
+	 * component.
+	 */
+	void fail(final IJavaElement element) {
+		this.failed.add(element);
+		this.failedRoots[this.find(this.nodes.get(element))] = true;
+	}
+
+	private int find(int node) {
+		while (this.parents[node] != node) {
+			// path halving.
+			this.parents[node] = this.parents[this.parents[node]];
+			node = this.parents[node];
+		}
+		return node;
+	}
+
+	/**
+	 * @return The connected components without failed nodes, each in the order
+	 *         its nodes were added.
+	 */
+	Set<Set<IJavaElement>> getComponents() {
+		final Map<Integer, Set<IJavaElement>> components = new LinkedHashMap<>();
+		for (final Map.Entry<IJavaElement, Integer> node : this.nodes.entrySet()) {
+			final int root = this.find(node.getValue());
+			if (!this.failedRoots[root])
+				components.computeIfAbsent(root, k -> new LinkedHashSet<>()).add(node.getKey());
+		}
+		return new LinkedHashSet<>(components.values());
+	}
+
+	/**
+	 * @param component A connected component.
+	 * @return The instances labeling the nodes of component.
+	 */
+	Set<Instance> getInstances(final Set<IJavaElement> component) {
+		final Set<Instance> ret = new LinkedHashSet<>();
+		for (final IJavaElement element : component) {
+			final Set<Instance> elementInstances = this.instances.get(element);
+			if (elementInstances != null)
+				ret.addAll(elementInstances);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param element A node.
+	 * @return true if the component of element contains a failed node so far.
+	 */
+	boolean isFailed(final IJavaElement element) {
+		return this.failedRoots[this.find(this.nodes.get(element))];
+	}
+
+	@Override
+	public String toString() {
+		return "NullFlowGraph [nodes=" + this.nodes.size() + ", edges=" + this.edges + ", failed=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ this.failed.size() + "]"; //$NON-NLS-1$
+	}
+}
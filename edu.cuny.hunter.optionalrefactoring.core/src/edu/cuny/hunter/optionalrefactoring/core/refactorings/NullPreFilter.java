@@ -0,0 +1,211 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+
+import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
+
+/**
+ * A cheap lexical pass deciding whether a compilation unit can possibly produce
+ * seeds for the {@link NullSeeder}, so that units which cannot are never parsed
+ * with bindings. A unit can produce seeds if it contains a <code>null</code>
+ * token or, when implicitly null fields are seeded, a field declarator without
+ * an initializer.
+ *
+ * The pass is conservative: it may keep units that turn out to have no seeds,
+ * but it never drops a unit that has some. It reports which kinds of seed sites
+ * it found independently of the settings, so that its results can be recorded
+ * across runs by the {@link NullSiteIndex}.
+ */
+class NullPreFilter {
+
+	/**
+	 * The unit contains a <code>null</code> token.
+	 */
+	static final int NULL_LITERALS = 1;
+
+	/**
+	 * The unit may contain a field declarator without an initializer.
+	 */
+	static final int UNINITIALIZED_FIELDS = 2;
+
+	static final int ALL_SITES = NULL_LITERALS | UNINITIALIZED_FIELDS;
+
+	/**
+	 * The kind of block opened by a left brace.
+	 */
+	private static enum Kind {
+		/**
+		 * A class, interface or anonymous class body, or anything that might be one.
+		 */
+		TYPE,
+		/**
+		 * An enum body, whose constants may have class bodies of their own.
+		 */
+		ENUM,
+		/**
+		 * A block that certainly isn't a type body, e.g., a method body.
+		 */
+		OTHER
+	}
+
+	/**
+	 * The state of the declaration or statement being scanned inside a block.
+	 */
+	private static class Block {
+		final Kind kind;
+		int parenDepth;
+		boolean sawAssignment;
+		boolean sawTypeKeyword;
+		boolean sawEnumKeyword;
+		boolean sawNew;
+		boolean enumConstantsEnded;
+
+		Block(final Kind kind) {
+			this.kind = kind;
+		}
+
+		void reset() {
+			this.sawAssignment = false;
+			this.sawTypeKeyword = false;
+			this.sawEnumKeyword = false;
+			this.sawNew = false;
+		}
+	}
+
+	/**
+	 * @param sites    The kinds of seed sites found in a unit.
+	 * @param settings The settings of the refactoring.
+	 * @return false only if a unit with the given sites certainly cannot produce
+	 *         seeds.
+	 */
+	static boolean mayProduceSeeds(final int sites, final RefactoringSettings settings) {
+		return (sites & getWantedSites(settings)) != 0;
+	}
+
+	/**
+	 * @return The kinds of seed sites that matter under settings.
+	 */
+	static int getWantedSites(final RefactoringSettings settings) {
+		return settings.refactorsFields() && settings.seedsImplicit() ? ALL_SITES : NULL_LITERALS;
+	}
+
+	/**
+	 * @param icu    The compilation unit to scan.
+	 * @param wanted The kinds of seed sites to look for.
+	 * @return The kinds of wanted seed sites that icu may contain.
+	 * @throws JavaModelException
+	 */
+	static int scan(final ICompilationUnit icu, final int wanted) throws JavaModelException {
+		final String source = icu.getSource();
+		if (source == null)
+			return wanted;
+		return scan(source.toCharArray(), icu.getJavaProject().getOption(JavaCore.COMPILER_SOURCE, true), wanted);
+	}
+
+	static int scan(final char[] source, final String sourceLevel, final int wanted) {
+		final boolean seedsFields = (wanted & UNINITIALIZED_FIELDS) != 0;
+		int ret = 0;
+		final IScanner scanner = ToolFactory.createScanner(false, false, false, sourceLevel);
+		scanner.setSource(source);
+
+		final Deque<Block> blocks = new ArrayDeque<>();
+		// the compilation unit level itself can't declare fields.
+		blocks.push(new Block(Kind.OTHER));
+		int previous = ITerminalSymbols.TokenNameEOF;
+		try {
+			for (int token = scanner.getNextToken(); token != ITerminalSymbols.TokenNameEOF; previous = token, token = scanner
+					.getNextToken()) {
+				if (token == ITerminalSymbols.TokenNamenull) {
+					ret |= NULL_LITERALS;
+					if (ret == wanted)
+						return ret;
+				}
+				if (!seedsFields || (ret & UNINITIALIZED_FIELDS) != 0)
+					continue;
+
+				final Block block = blocks.peek();
+				switch (token) {
+				case ITerminalSymbols.TokenNameLPAREN:
+					block.parenDepth++;
+					break;
+				case ITerminalSymbols.TokenNameRPAREN:
+					block.parenDepth--;
+					break;
+				case ITerminalSymbols.TokenNameEQUAL:
+					if (block.parenDepth == 0)
+						block.sawAssignment = true;
+					break;
+				case ITerminalSymbols.TokenNameclass:
+				case ITerminalSymbols.TokenNameinterface:
+					block.sawTypeKeyword = true;
+					break;
+				case ITerminalSymbols.TokenNameenum:
+					block.sawEnumKeyword = true;
+					break;
+				case ITerminalSymbols.TokenNamenew:
+					block.sawNew = true;
+					break;
+				case ITerminalSymbols.TokenNameLBRACE:
+					blocks.push(new Block(kindOf(block, previous)));
+					break;
+				case ITerminalSymbols.TokenNameRBRACE:
+					if (blocks.size() > 1)
+						blocks.pop();
+					final Block outer = blocks.peek();
+					if (!outer.sawAssignment)
+						outer.reset();
+					break;
+				case ITerminalSymbols.TokenNameSEMICOLON:
+				case ITerminalSymbols.TokenNameCOMMA:
+					if (block.parenDepth != 0)
+						break;
+					if (block.kind == Kind.ENUM && !block.enumConstantsEnded) {
+						// enum constants aren't fields we seed.
+						if (token == ITerminalSymbols.TokenNameSEMICOLON)
+							block.enumConstantsEnded = true;
+					} else if (block.kind != Kind.OTHER && !block.sawAssignment) {
+						// a declarator without an initializer, possibly of a field.
+						ret |= UNINITIALIZED_FIELDS;
+						if (ret == wanted)
+							return ret;
+					}
+					if (token == ITerminalSymbols.TokenNameSEMICOLON)
+						block.reset();
+					else
+						block.sawAssignment = false;
+					break;
+				}
+			}
+		} catch (final InvalidInputException e) {
+			// we can't tell, so let the parser decide.
+			return wanted;
+		}
+		return ret;
+	}
+
+	private static Kind kindOf(final Block enclosing, final int previous) {
+		if (enclosing.sawEnumKeyword)
+			return Kind.ENUM;
+		if (enclosing.sawTypeKeyword)
+			return Kind.TYPE;
+		// an anonymous class body.
+		if (previous == ITerminalSymbols.TokenNameRPAREN && enclosing.sawNew)
+			return Kind.TYPE;
+		// an enum constant's class body.
+		if (enclosing.kind == Kind.ENUM && !enclosing.enumConstantsEnded)
+			return Kind.TYPE;
+		return Kind.OTHER;
+	}
+
+	private NullPreFilter() {
+	}
+}
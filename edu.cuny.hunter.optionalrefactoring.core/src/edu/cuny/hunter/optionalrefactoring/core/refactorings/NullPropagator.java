@@ -2,9 +2,7 @@ package edu.cuny.hunter.optionalrefactoring.core.refactorings;
 
 import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -13,7 +11,6 @@ import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
 import org.eclipse.jdt.core.dom.ArrayAccess;
 import org.eclipse.jdt.core.dom.ArrayCreation;
@@ -41,13 +38,14 @@ import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
-import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
 
 import edu.cuny.hunter.optionalrefactoring.core.analysis.Action;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterASTException;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.TypeHierarchyCache;
 import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 
 /**
@@ -93,8 +91,10 @@ class NullPropagator extends N2ONodeProcessor {
 	private final Expression name;
 
 	public NullPropagator(final IJavaElement element, final ASTNode node, final IJavaSearchScope scope,
-			final RefactoringSettings settings, final IProgressMonitor monitor) throws CoreException {
-		super(element, node, settings, monitor, scope);
+			final RefactoringSettings settings, final IProgressMonitor monitor, final ASTCache astCache,
+			final OccurrenceSearcher searcher, final TypeHierarchyCache hierarchyCache,
+			final MethodDeclarationCache declarationCache) throws CoreException {
+		super(element, node, settings, monitor, scope, astCache, searcher, hierarchyCache, declarationCache);
 		this.name = (Expression) node;
 	}
 
@@ -185,7 +185,7 @@ class NullPropagator extends N2ONodeProcessor {
 		// Get the corresponding method.
 		final IMethod meth = Util.resolveElement(methDecl);
 		// Get the top most method
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 		final EnumSet<PreconditionFailure> pf = top == null ? 
 				EnumSet.of(PreconditionFailure.NON_SOURCE_CODE) : PreconditionFailure.check(methDecl, top, this.settings);
 		final Action action = Action.infer(methDecl, top, pf, this.settings);
@@ -267,22 +267,14 @@ class NullPropagator extends N2ONodeProcessor {
 
 	@Override
 	void descend(final MethodDeclaration node) throws CoreException {
-		final Set<ReturnStatement> ret = new LinkedHashSet<>();
-		node.accept(new ASTVisitor() {
-			@Override
-			public boolean visit(final ReturnStatement node) {
-				ret.add(node);
-				return super.visit(node);
-			}
-		});
-		for (final ReturnStatement r : ret)
+		for (final ReturnStatement r : this.declarationCache.getReturns(node))
 			this.processDescent(r.getExpression());
 	}
 
 	@Override
 	void descend(final MethodInvocation node) throws CoreException {
 		final IMethod meth = Util.resolveElement(node);
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		final EnumSet<PreconditionFailure> pf = top == null ? 
 				EnumSet.of(PreconditionFailure.NON_SOURCE_CODE) : PreconditionFailure.check(node, top, this.settings);
@@ -315,7 +307,7 @@ class NullPropagator extends N2ONodeProcessor {
 	@Override
 	void descend(final SuperMethodInvocation node) throws CoreException {
 		final IMethod meth = Util.resolveElement(node);
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		final EnumSet<PreconditionFailure> pf = top == null ? 
 				EnumSet.of(PreconditionFailure.NON_SOURCE_CODE) : PreconditionFailure.check(node, top, this.settings);
@@ -421,7 +413,7 @@ class NullPropagator extends N2ONodeProcessor {
 		if (meth == null)
 			throw new HarvesterASTException(PreconditionFailure.JAVA_MODEL_ERROR, node);
 
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		if (top == null) {
 			final EnumSet<PreconditionFailure> pf = EnumSet.of(PreconditionFailure.NON_SOURCE_CODE);
@@ -442,7 +434,7 @@ class NullPropagator extends N2ONodeProcessor {
 
 		if (meth == null)
 			throw new HarvesterASTException(PreconditionFailure.JAVA_MODEL_ERROR, node);
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		if (top == null) {
 			final EnumSet<PreconditionFailure> pf = EnumSet.of(PreconditionFailure.NON_SOURCE_CODE);
@@ -460,7 +452,7 @@ class NullPropagator extends N2ONodeProcessor {
 			throw new HarvesterASTException(PreconditionFailure.MISSING_BINDING, node);
 
 		final IMethod meth = (IMethod) b.getJavaElement();
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 		if (top == null) {
 			final EnumSet<PreconditionFailure> pf = EnumSet.of(PreconditionFailure.NON_SOURCE_CODE);
 			if (pf.stream().anyMatch(f -> f.getSeverity(this.settings) >= RefactoringStatus.ERROR))
@@ -480,7 +472,7 @@ class NullPropagator extends N2ONodeProcessor {
 			throw new HarvesterASTException(PreconditionFailure.MISSING_BINDING, node);
 
 		final IMethod meth = (IMethod) b.getJavaElement();
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		if (top == null) {
 			final EnumSet<PreconditionFailure> pf = EnumSet.of(PreconditionFailure.NON_SOURCE_CODE);
@@ -498,7 +490,7 @@ class NullPropagator extends N2ONodeProcessor {
 			throw new HarvesterASTException(PreconditionFailure.MISSING_BINDING, node);
 
 		final IMethod meth = (IMethod) node.resolveMethodBinding().getJavaElement();
-		final IMethod top = Util.getTopMostSourceMethod(meth, this.monitor);
+		final IMethod top = this.hierarchyCache.getTopMostSourceMethod(meth, this.monitor);
 
 		if (top == null) {
 			final EnumSet<PreconditionFailure> pf = EnumSet.of(PreconditionFailure.NON_SOURCE_CODE);
@@ -518,11 +510,8 @@ class NullPropagator extends N2ONodeProcessor {
 
 		final IMethod meth = (IMethod) b.getDeclaringMethod().getJavaElement();
 
-		final SearchPattern pattern = SearchPattern.createPattern(meth, IJavaSearchConstants.REFERENCES,
-				SearchPattern.R_EXACT_MATCH);
-
 		this.findParameters(node.getParent() instanceof EnhancedForStatement ? 0 : getFormalParameterNumber(node),
-				pattern);
+				meth, IJavaSearchConstants.REFERENCES);
 	}
 
 	@Override
@@ -41,6 +41,8 @@ import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterASTException;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterException;
 import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.TypeHierarchyCache;
 import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 
 /**
@@ -55,12 +57,53 @@ import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
  */
 class NullSeeder extends N2ONodeProcessor {
 
+	/**
+	 * Decides whether an AST can produce seeds without resolving any bindings, so
+	 * that it can be run on a fast binding-free parse. It is conservative in that
+	 * every implicitly null field candidate counts as a seed, regardless of whether
+	 * the constructors initialize it.
+	 *
+	 * @param root     An AST, typically parsed without bindings.
+	 * @param settings The settings of the refactoring.
+	 * @return false only if seeding root cannot produce any seeds.
+	 */
+	static boolean hasSeeds(final ASTNode root, final RefactoringSettings settings) {
+		final boolean[] ret = { false };
+		root.accept(new ASTVisitor() {
+			@Override
+			public boolean preVisit2(final ASTNode node) {
+				// nothing left to find.
+				return !ret[0];
+			}
+
+			@Override
+			public boolean visit(final NullLiteral node) {
+				ret[0] = true;
+				return false;
+			}
+
+			@Override
+			public boolean visit(final VariableDeclarationFragment node) {
+				if (node.getParent().getNodeType() == ASTNode.FIELD_DECLARATION && node.getInitializer() == null
+						&& settings.refactorsFields() && settings.seedsImplicit())
+					// primitives are never seeded.
+					if (!((FieldDeclaration) node.getParent()).getType().isPrimitiveType()
+							|| node.getExtraDimensions() > 0)
+						ret[0] = true;
+				return super.visit(node);
+			}
+		});
+		return ret[0];
+	}
+
 	private ASTNode currentNull;
 	private final RefactoringStatus status = new RefactoringStatus();
 
 	public NullSeeder(final IJavaElement element, final ASTNode node, final RefactoringSettings settings, 
-			final IProgressMonitor monitor, final IJavaSearchScope scope) throws HarvesterException {
-		super(element, node, settings, monitor, scope);
+			final IProgressMonitor monitor, final IJavaSearchScope scope, final ASTCache astCache,
+			final OccurrenceSearcher searcher, final TypeHierarchyCache hierarchyCache,
+			final MethodDeclarationCache declarationCache) throws HarvesterException {
+		super(element, node, settings, monitor, scope, astCache, searcher, hierarchyCache, declarationCache);
 	}
 	
 	/**
@@ -83,7 +126,7 @@ class NullSeeder extends N2ONodeProcessor {
 		if (this.settings.refactorsParameters()) {
 			final int argPos = Util.getParamNumber(node.arguments(), (Expression) this.currentNull);
 			final IMethod method = Util.resolveElement(node, argPos);
-			final IMethod top = Util.getTopMostSourceMethod(method, this.monitor);
+			final IMethod top = this.hierarchyCache.getTopMostSourceMethod(method, this.monitor);
 			if (top == null)
 				this.endProcessing(method, this.currentNull, EnumSet.of(PreconditionFailure.NON_SOURCE_CODE));
 
@@ -97,7 +140,7 @@ class NullSeeder extends N2ONodeProcessor {
 		if (this.settings.refactorsParameters()) {
 			final int argPos = Util.getParamNumber(node.arguments(), (Expression) this.currentNull);
 			final IMethod method = Util.resolveElement(node);
-			final IMethod top = Util.getTopMostSourceMethod(method, this.monitor);
+			final IMethod top = this.hierarchyCache.getTopMostSourceMethod(method, this.monitor);
 			if (top == null)
 				this.endProcessing(method, this.currentNull, EnumSet.of(PreconditionFailure.NON_SOURCE_CODE));
 
@@ -111,7 +154,7 @@ class NullSeeder extends N2ONodeProcessor {
 		if (this.settings.refactorsParameters()) {
 			final int argPos = Util.getParamNumber(node.arguments(), (Expression) this.currentNull);
 			final IMethod method = Util.resolveElement(node);
-			final IMethod top = Util.getTopMostSourceMethod(method, this.monitor);
+			final IMethod top = this.hierarchyCache.getTopMostSourceMethod(method, this.monitor);
 			if (top == null)
 				this.endProcessing(method, this.currentNull, EnumSet.of(PreconditionFailure.NON_SOURCE_CODE));
 
@@ -134,7 +177,7 @@ class NullSeeder extends N2ONodeProcessor {
 		if (this.settings.refactorsParameters()) {
 			final int argPos = Util.getParamNumber(node.arguments(), (Expression) this.currentNull);
 			final IMethod method = Util.resolveElement(node);
-			final IMethod top = Util.getTopMostSourceMethod(method, this.monitor);
+			final IMethod top = this.hierarchyCache.getTopMostSourceMethod(method, this.monitor);
 			if (top == null)
 				this.endProcessing(method, this.currentNull, EnumSet.of(PreconditionFailure.NON_SOURCE_CODE));
 
@@ -148,7 +191,7 @@ class NullSeeder extends N2ONodeProcessor {
 		if (this.settings.refactorsParameters()) {
 			final int argPos = Util.getParamNumber(node.arguments(), (Expression) this.currentNull);
 			final IMethod method = Util.resolveElement(node);
-			final IMethod top = Util.getTopMostSourceMethod(method, this.monitor);
+			final IMethod top = this.hierarchyCache.getTopMostSourceMethod(method, this.monitor);
 			if (top == null)
 				this.endProcessing(method, this.currentNull, EnumSet.of(PreconditionFailure.NON_SOURCE_CODE));
 
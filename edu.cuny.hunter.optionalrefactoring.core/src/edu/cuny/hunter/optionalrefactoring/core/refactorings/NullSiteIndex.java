@@ -0,0 +1,189 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
+
+/**
+ * A persistent cache of the results of the {@link NullPreFilter}, i.e., of the
+ * kinds of seed sites in each source file of the workspace. Entries are keyed
+ * by the full path of the file and are valid as long as its modification stamp
+ * doesn't change, so a file is only scanned again after it's been modified.
+ * Units with unsaved changes are always scanned and never recorded.
+ *
+ * This is not part of the JDT search index. Contributing the sites to it
+ * through a search participant and
+ * {@link org.eclipse.jdt.core.search.SearchParticipant#scheduleDocumentIndexing}
+ * would keep them up to date in the background, but the files are instead
+ * rescanned lazily when the refactoring asks for them.
+ *
+ * The index is kept in the state location of this bundle between sessions, or
+ * only in memory when running outside of an OSGi framework.
+ */
+class NullSiteIndex {
+
+	private static class Entry {
+		final long stamp;
+		final int sites;
+
+		Entry(final long stamp, final int sites) {
+			this.stamp = stamp;
+			this.sites = sites;
+		}
+	}
+
+	private static final String FILE_NAME = "nullsites.index"; //$NON-NLS-1$
+
+	/**
+	 * Bump whenever the format or the meaning of the recorded sites changes.
+	 */
+	private static final int VERSION = 1;
+
+	private static final NullSiteIndex DEFAULT = new NullSiteIndex(getDefaultFile());
+
+	/**
+	 * @return The workspace-wide index.
+	 */
+	static NullSiteIndex getDefault() {
+		return DEFAULT;
+	}
+
+	private static File getDefaultFile() {
+		final Bundle bundle = FrameworkUtil.getBundle(NullSiteIndex.class);
+		if (bundle == null)
+			return null;
+		try {
+			return Platform.getStateLocation(bundle).append(FILE_NAME).toFile();
+		} catch (final IllegalStateException e) {
+			// no instance location.
+			return null;
+		}
+	}
+
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * Where the index is persisted, or <code>null</code> if it's only kept in
+	 * memory.
+	 */
+	private final File file;
+
+	private boolean loaded;
+
+	private boolean dirty;
+
+	private int hits;
+
+	private int misses;
+
+	private NullSiteIndex(final File file) {
+		this.file = file;
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @param icu A compilation unit.
+	 * @return The kinds of seed sites that icu may contain, see
+	 *         {@link NullPreFilter#ALL_SITES}.
+	 * @throws JavaModelException
+	 */
+	int getSites(final ICompilationUnit icu) throws JavaModelException {
+		final IResource resource = icu.getResource();
+		// the contents may differ from the file.
+		if (resource == null || icu.getPrimary().isWorkingCopy() || icu.isWorkingCopy() && icu.hasUnsavedChanges())
+			return NullPreFilter.scan(icu, NullPreFilter.ALL_SITES);
+
+		final long stamp = resource.getModificationStamp();
+		if (stamp == IResource.NULL_STAMP)
+			return NullPreFilter.scan(icu, NullPreFilter.ALL_SITES);
+
+		final String key = resource.getFullPath().toString();
+		synchronized (this) {
+			this.load();
+			final Entry entry = this.entries.get(key);
+			if (entry != null && entry.stamp == stamp) {
+				this.hits++;
+				return entry.sites;
+			}
+			this.misses++;
+		}
+		// other units may be scanned meanwhile.
+		final int ret = NullPreFilter.scan(icu, NullPreFilter.ALL_SITES);
+		synchronized (this) {
+			this.entries.put(key, new Entry(stamp, ret));
+			this.dirty = true;
+		}
+		return ret;
+	}
+
+	private void load() {
+		if (this.loaded)
+			return;
+		this.loaded = true;
+		if (this.file == null || !this.file.isFile())
+			return;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+			if (in.readInt() != VERSION)
+				return;
+			for (int i = in.readInt(); i > 0; i--) {
+				final String key = in.readUTF();
+				final long stamp = in.readLong();
+				this.entries.put(key, new Entry(stamp, in.readByte()));
+			}
+		} catch (final IOException e) {
+			// start over.
+			Util.LOGGER.log(Level.WARNING, "Can't read the null site index.", e); //$NON-NLS-1$
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Writes the index to its file if it changed since it was last written.
+	 */
+	synchronized void save() {
+		if (!this.dirty || this.file == null)
+			return;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)))) {
+			out.writeInt(VERSION);
+			out.writeInt(this.entries.size());
+			for (final Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().stamp);
+				out.writeByte(entry.getValue().sites);
+			}
+			this.dirty = false;
+		} catch (final IOException e) {
+			Util.LOGGER.log(Level.WARNING, "Can't write the null site index.", e); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "NullSiteIndex [entries=" + this.entries.size() + ", hits=" + this.hits + ", misses=" + this.misses //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ "]"; //$NON-NLS-1$
+	}
+}
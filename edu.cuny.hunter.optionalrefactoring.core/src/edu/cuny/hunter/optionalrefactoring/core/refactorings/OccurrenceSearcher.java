@@ -0,0 +1,411 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.ILocalVariable;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.Javadoc;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.LocalVariableDeclarationMatch;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTNodeIndex;
+
+/**
+ * Finds the occurrences of program elements within the scope of a refactoring.
+ * Occurrences are looked up in a {@link ReferenceIndex} if one has been built,
+ * see {@link RefactoringSettings.Mode#INDEX_REFERENCES}, and searched for with
+ * the {@link SearchEngine} otherwise.
+ *
+ * A single searcher is shared by all harvesters of a refactoring run, and the
+ * processable matches of each element are cached until the run ends, so that
+ * an element reached from many compilation units is only searched for once.
+ *
+ * Searches are narrowed to what the element can be referenced from: local
+ * variables and parameters are found by traversing the declaring member's AST
+ * without the search engine, private members are searched for in their
+ * compilation unit, and package-private members in their package.
+ */
+public class OccurrenceSearcher {
+
+	/**
+	 * An element searched for with a limit.
+	 */
+	private static final class Query {
+
+		private final IJavaElement element;
+
+		private final int limitTo;
+
+		Query(final IJavaElement element, final int limitTo) {
+			this.element = element;
+			this.limitTo = limitTo;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Query))
+				return false;
+			final Query other = (Query) obj;
+			return this.limitTo == other.limitTo && this.element.equals(other.element);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.element, this.limitTo);
+		}
+	}
+
+	/**
+	 * @return true iff member is accessible from its package only.
+	 */
+	private static boolean isPackagePrivate(final IMember member) throws JavaModelException {
+		if (Flags.isPublic(member.getFlags()) || Flags.isProtected(member.getFlags())
+				|| Flags.isPrivate(member.getFlags()))
+			return false;
+		// interface and annotation members are implicitly public.
+		final IType declaringType = member.getDeclaringType();
+		if (declaringType != null && declaringType.isInterface())
+			return false;
+		// so are enum constants.
+		return !(member instanceof IField && ((IField) member).isEnumConstant());
+	}
+
+	/**
+	 * @param match A search match.
+	 * @return true iff match is an accurate occurrence outside of comments and
+	 *         import declarations.
+	 */
+	static boolean isProcessable(final SearchMatch match) {
+		return match.getAccuracy() == SearchMatch.A_ACCURATE && !match.isInsideDocComment()
+		// We are finding import declarations for some reason, they
+		// should be ignored
+				&& ((IJavaElement) match.getElement()).getElementType() != IJavaElement.IMPORT_DECLARATION;
+	}
+
+	private final ASTCache astCache;
+
+	private final Map<Query, List<SearchMatch>> matches = new HashMap<>();
+
+	/**
+	 * The narrowed scopes of package-private members by package name.
+	 */
+	private final Map<String, IJavaSearchScope> packageScopes = new HashMap<>();
+
+	private final IJavaSearchScope scope;
+
+	private final SearchEngine searchEngine;
+
+	private ReferenceIndex index;
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * @param scope    The scope of the refactoring. No match outside of it is
+	 *                 reported.
+	 * @param astCache Provides the ASTs traversed for local variables.
+	 */
+	public OccurrenceSearcher(final IJavaSearchScope scope, final ASTCache astCache) {
+		this(scope, astCache, null);
+	}
+
+	/**
+	 * @param scope            The scope of the refactoring. No match outside of it
+	 *                         is reported.
+	 * @param astCache         Provides the ASTs traversed for local variables.
+	 * @param workingCopyOwner The owner of the working copies searched instead of
+	 *                         their primary compilation units, or
+	 *                         <code>null</code> for the primary owner.
+	 */
+	public OccurrenceSearcher(final IJavaSearchScope scope, final ASTCache astCache,
+			final WorkingCopyOwner workingCopyOwner) {
+		this.scope = scope;
+		this.astCache = astCache;
+		this.searchEngine = workingCopyOwner == null ? new SearchEngine() : new SearchEngine(workingCopyOwner);
+	}
+
+	/**
+	 * Ends the run, dropping the cached matches and the index.
+	 */
+	synchronized void clear() {
+		this.matches.clear();
+		this.packageScopes.clear();
+		this.index = null;
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * @param element An element.
+	 * @param limitTo A search limit.
+	 * @return The cached processable matches of element, or <code>null</code> if
+	 *         element hasn't been searched for yet.
+	 */
+	synchronized List<SearchMatch> getCached(final IJavaElement element, final int limitTo) {
+		final List<SearchMatch> ret = this.matches.get(new Query(element, limitTo));
+		if (ret != null)
+			this.hits++;
+		return ret;
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @param element The element to search for.
+	 * @param limitTo The search limit.
+	 * @param monitor
+	 * @return The processable occurrences of element, searching for them only the
+	 *         first time element is asked for.
+	 * @throws CoreException
+	 */
+	List<SearchMatch> getMatches(final IJavaElement element, final int limitTo, final IProgressMonitor monitor)
+			throws CoreException {
+		List<SearchMatch> ret = this.getCached(element, limitTo);
+		if (ret == null) {
+			ret = this.searchUncached(element, limitTo, monitor);
+			synchronized (this) {
+				this.misses++;
+			}
+			this.put(element, limitTo, ret);
+		}
+		return ret;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return The source package fragments named packageName in the projects of
+	 *         the refactoring scope.
+	 */
+	private synchronized IJavaSearchScope getPackageScope(final String packageName) throws JavaModelException {
+		IJavaSearchScope ret = this.packageScopes.get(packageName);
+		if (ret == null) {
+			final IJavaModel model = JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
+			final List<IJavaElement> fragments = new ArrayList<>();
+			for (final IPath path : this.scope.enclosingProjectsAndJars()) {
+				// jars can't declare source members.
+				if (path.segmentCount() != 1)
+					continue;
+				final IJavaProject project = model.getJavaProject(path.segment(0));
+				if (project.exists())
+					for (final IPackageFragmentRoot root : project.getPackageFragmentRoots())
+						if (root.getKind() == IPackageFragmentRoot.K_SOURCE) {
+							final IPackageFragment fragment = root.getPackageFragment(packageName);
+							if (fragment.exists())
+								fragments.add(fragment);
+						}
+			}
+			ret = SearchEngine.createJavaSearchScope(fragments.toArray(new IJavaElement[fragments.size()]));
+			this.packageScopes.put(packageName, ret);
+		}
+		return ret;
+	}
+
+	boolean isIndexed() {
+		return this.index != null;
+	}
+
+	/**
+	 * @param element An element to search for.
+	 * @return The scope that all occurrences of element are in, or
+	 *         <code>null</code> if it's no narrower than the refactoring scope.
+	 * @throws JavaModelException
+	 */
+	private IJavaSearchScope narrow(final IJavaElement element) throws JavaModelException {
+		final IMember member;
+		if (element instanceof ILocalVariable)
+			member = ((ILocalVariable) element).getDeclaringMember();
+		else if (element instanceof IMember)
+			member = (IMember) element;
+		else
+			return null;
+		final ICompilationUnit icu = member.getCompilationUnit();
+		if (icu == null)
+			return null;
+		if (element instanceof ILocalVariable || Flags.isPrivate(member.getFlags()))
+			return SearchEngine.createJavaSearchScope(new IJavaElement[] { icu });
+		if (isPackagePrivate(member))
+			return this.getPackageScope(member.getAncestor(IJavaElement.PACKAGE_FRAGMENT).getElementName());
+		return null;
+	}
+
+	/**
+	 * Caches the processable matches of an element found elsewhere, e.g., by a
+	 * batched search.
+	 *
+	 * @param element The element searched for.
+	 * @param limitTo The limit of the search.
+	 * @param found   All processable matches of element.
+	 */
+	synchronized void put(final IJavaElement element, final int limitTo, final List<SearchMatch> found) {
+		this.matches.put(new Query(element, limitTo), found);
+	}
+
+	/**
+	 * Reports the processable occurrences of element to requestor, searching for
+	 * them only the first time element is asked for.
+	 *
+	 * @param element   The element to search for.
+	 * @param limitTo   One of the limits of
+	 *                  {@link SearchPattern#createPattern(IJavaElement, int, int)}.
+	 * @param requestor Receives the matches.
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	void search(final IJavaElement element, final int limitTo, final SearchRequestor requestor,
+			final IProgressMonitor monitor) throws CoreException {
+		for (final SearchMatch match : this.getMatches(element, limitTo, monitor))
+			requestor.acceptSearchMatch(match);
+	}
+
+	/**
+	 * Reports the matches of pattern to requestor using the search engine. The
+	 * matches are not cached.
+	 */
+	void search(final SearchPattern pattern, final SearchRequestor requestor, final IProgressMonitor monitor)
+			throws CoreException {
+		this.searchEngine.search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() },
+				this.scope, requestor, monitor);
+	}
+
+	/**
+	 * Reports the occurrences of local to requestor by traversing the body
+	 * declaring it.
+	 *
+	 * @return false if local can't be resolved in source within the refactoring
+	 *         scope, in which case nothing is reported.
+	 */
+	private boolean searchLocal(final ILocalVariable local, final int limitTo, final SearchRequestor requestor,
+			final IProgressMonitor monitor) throws CoreException {
+		final ICompilationUnit icu = (ICompilationUnit) local.getAncestor(IJavaElement.COMPILATION_UNIT);
+		final ISourceRange nameRange = local.getNameRange();
+		if (icu == null || nameRange == null || nameRange.getOffset() < 0
+				|| !this.scope.encloses(local.getDeclaringMember()))
+			return false;
+		final CompilationUnit root = this.astCache.getCompilationUnit(icu, monitor);
+		final ASTNode name = ASTNodeIndex.of(root).find(nameRange.getOffset(), nameRange.getLength(),
+				ASTNode.SIMPLE_NAME);
+		final IBinding binding = name == null ? null : ((SimpleName) name).resolveBinding();
+		if (!(binding instanceof IVariableBinding))
+			return false;
+		ASTNode body = name;
+		while (body != null && !(body instanceof BodyDeclaration))
+			body = body.getParent();
+		if (body == null)
+			return false;
+
+		final List<SimpleName> occurrences = new ArrayList<>();
+		body.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(final Javadoc node) {
+				return false;
+			}
+
+			@Override
+			public boolean visit(final SimpleName node) {
+				if (binding.isEqualTo(node.resolveBinding()))
+					occurrences.add(node);
+				return false;
+			}
+		});
+		for (final SimpleName occurrence : occurrences) {
+			final boolean declaration = occurrence.isDeclaration();
+			if (limitTo != IJavaSearchConstants.ALL_OCCURRENCES
+					&& declaration != (limitTo == IJavaSearchConstants.DECLARATIONS))
+				continue;
+			requestor.acceptSearchMatch(declaration
+					? new LocalVariableDeclarationMatch(local, SearchMatch.A_ACCURATE, occurrence.getStartPosition(),
+							occurrence.getLength(), SearchEngine.getDefaultSearchParticipant(), local.getResource())
+					: new SearchMatch(local.getDeclaringMember(), SearchMatch.A_ACCURATE,
+							occurrence.getStartPosition(), occurrence.getLength(),
+							SearchEngine.getDefaultSearchParticipant(), local.getResource()));
+		}
+		return true;
+	}
+
+	private List<SearchMatch> searchUncached(final IJavaElement element, final int limitTo,
+			final IProgressMonitor monitor) throws CoreException {
+		final List<SearchMatch> ret = new ArrayList<>();
+		final SearchRequestor collector = new SearchRequestor() {
+			@Override
+			public void acceptSearchMatch(final SearchMatch match) {
+				if (isProcessable(match))
+					ret.add(match);
+			}
+		};
+		if (this.index != null && this.index.search(element, limitTo, collector, monitor))
+			return ret;
+		if (element instanceof ILocalVariable
+				&& this.searchLocal((ILocalVariable) element, limitTo, collector, monitor))
+			return ret;
+
+		final SearchPattern pattern = SearchPattern.createPattern(element, limitTo, SearchPattern.R_EXACT_MATCH);
+		final IJavaSearchScope narrowed = this.narrow(element);
+		if (narrowed == null)
+			this.search(pattern, collector, monitor);
+		else
+			// the narrowed scope may reach outside of the refactoring scope.
+			this.searchEngine.search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() },
+					narrowed, new SearchRequestor() {
+						@Override
+						public void acceptSearchMatch(final SearchMatch match) {
+							if (OccurrenceSearcher.this.scope.encloses((IJavaElement) match.getElement()))
+								collector.acceptSearchMatch(match);
+						}
+					}, monitor);
+		return ret;
+	}
+
+	void setIndex(final ReferenceIndex index) {
+		this.index = index;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OccurrenceSearcher [cached=" + this.matches.size() + ", hits=" + this.hits + ", misses=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ this.misses + ", indexed=" + this.isIndexed() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
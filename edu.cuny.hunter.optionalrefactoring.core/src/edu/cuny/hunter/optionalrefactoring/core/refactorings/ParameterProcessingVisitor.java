@@ -3,8 +3,10 @@ package edu.cuny.hunter.optionalrefactoring.core.refactorings;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
@@ -13,6 +15,8 @@ import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 import org.eclipse.jdt.core.dom.SuperMethodInvocation;
 
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTNodeIndex;
+
 class ParameterProcessingVisitor extends ASTVisitor {
 	private final Set<SingleVariableDeclaration> parameters = new LinkedHashSet<>();
 	private final Set<Expression> expressions = new LinkedHashSet<>();
@@ -38,6 +42,21 @@ class ParameterProcessingVisitor extends ASTVisitor {
 		return this.parameters;
 	}
 
+	/**
+	 * Visits only the nodes that may correspond to the match location, i.e., the
+	 * nodes starting at it and their parents, using the position index of the AST
+	 * instead of traversing the whole tree.
+	 *
+	 * @param node Any node of the AST to process.
+	 */
+	void process(final ASTNode node) {
+		for (final ASTNode candidate : ASTNodeIndex.of((CompilationUnit) node.getRoot()).findAll(this.loc)) {
+			this.visitCandidate(candidate);
+			if (candidate.getParent() != null)
+				this.visitCandidate(candidate.getParent());
+		}
+	}
+
 	@Override
 	public boolean visit(final ClassInstanceCreation node) {
 		if (node.getType().getStartPosition() == this.loc) {
@@ -97,4 +116,27 @@ class ParameterProcessingVisitor extends ASTVisitor {
 
 		return true;
 	}
-}
\ No newline at end of file
+
+	private void visitCandidate(final ASTNode node) {
+		switch (node.getNodeType()) {
+		case ASTNode.CLASS_INSTANCE_CREATION:
+			this.visit((ClassInstanceCreation) node);
+			break;
+		case ASTNode.CONSTRUCTOR_INVOCATION:
+			this.visit((ConstructorInvocation) node);
+			break;
+		case ASTNode.METHOD_DECLARATION:
+			this.visit((MethodDeclaration) node);
+			break;
+		case ASTNode.METHOD_INVOCATION:
+			this.visit((MethodInvocation) node);
+			break;
+		case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+			this.visit((SuperConstructorInvocation) node);
+			break;
+		case ASTNode.SUPER_METHOD_INVOCATION:
+			this.visit((SuperMethodInvocation) node);
+			break;
+		}
+	}
+}
@@ -1,22 +1,41 @@
 package edu.cuny.hunter.optionalrefactoring.core.refactorings;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ILocalVariable;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
-import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchMatch;
-import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -27,6 +46,10 @@ import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterASTException;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterException;
+import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTNodeIndex;
+import edu.cuny.hunter.optionalrefactoring.core.utils.TypeHierarchyCache;
 import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
 
 /**
@@ -48,24 +71,104 @@ import edu.cuny.hunter.optionalrefactoring.core.utils.Util;
  */
 public class RefactorableHarvester {
 
+	/**
+	 * The maximum number of elements searched for at once in
+	 * {@link RefactoringSettings.Mode#BATCH_SEARCHES} mode.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * The maximum number of elements whose occurrences are searched for ahead of
+	 * processing in {@link RefactoringSettings.Mode#PARALLEL_PROPAGATION} mode.
+	 */
+	private static final int FRONTIER_SIZE = 4 * ForkJoinPool.getCommonPoolParallelism();
+
+	/**
+	 * @param element A worklist element.
+	 * @return A pattern matching all occurrences of element.
+	 */
+	private static SearchPattern createPattern(final IJavaElement element) {
+		return SearchPattern.createPattern(element, IJavaSearchConstants.ALL_OCCURRENCES,
+				SearchPattern.R_EXACT_MATCH);
+	}
+
+	/**
+	 * @param node A node at the position of a search match.
+	 * @return The element that node is an occurrence of, or <code>null</code> if
+	 *         it can't be resolved.
+	 */
+	private static IJavaElement resolveOccurrence(final ASTNode node) {
+		IBinding binding;
+		switch (node.getNodeType()) {
+		case ASTNode.SIMPLE_NAME:
+		case ASTNode.QUALIFIED_NAME:
+			binding = ((Name) node).resolveBinding();
+			break;
+		case ASTNode.METHOD_INVOCATION:
+			binding = ((MethodInvocation) node).resolveMethodBinding();
+			break;
+		case ASTNode.SUPER_METHOD_INVOCATION:
+			binding = ((SuperMethodInvocation) node).resolveMethodBinding();
+			break;
+		case ASTNode.CLASS_INSTANCE_CREATION:
+			binding = ((ClassInstanceCreation) node).resolveConstructorBinding();
+			break;
+		case ASTNode.CONSTRUCTOR_INVOCATION:
+			binding = ((ConstructorInvocation) node).resolveConstructorBinding();
+			break;
+		case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+			binding = ((SuperConstructorInvocation) node).resolveConstructorBinding();
+			break;
+		default:
+			return null;
+		}
+		if (binding instanceof IMethodBinding)
+			binding = ((IMethodBinding) binding).getMethodDeclaration();
+		else if (binding instanceof IVariableBinding)
+			binding = ((IVariableBinding) binding).getVariableDeclaration();
+		return binding == null ? null : binding.getJavaElement();
+	}
+
 	private final IJavaElement element;
 	private final ASTNode refactoringRootNode;
 	private final IJavaSearchScope scopeRoot;
 	private final RefactoringSettings settings;
 	private final IProgressMonitor monitor;
-	private final SearchEngine searchEngine = new SearchEngine();
+	private final ASTCache astCache;
+	private final OccurrenceSearcher searcher;
+	private final TypeHierarchyCache hierarchyCache;
+	private final MethodDeclarationCache declarationCache;
 	private final WorkList workList = new WorkList();
 	private final Set<IJavaElement> notRefactorable = new LinkedHashSet<>();
 	private final Set<Instance> instances = new LinkedHashSet<>();
 	private final Set<Entities> entities = new LinkedHashSet<>();
 
 	public RefactorableHarvester(final IJavaElement element, final CompilationUnit cu, final IJavaSearchScope scope, 
-			final RefactoringSettings settings, final IProgressMonitor m) throws JavaModelException {
+			final RefactoringSettings settings, final IProgressMonitor m, final ASTCache astCache,
+			final OccurrenceSearcher searcher, final TypeHierarchyCache hierarchyCache,
+			final MethodDeclarationCache declarationCache) throws JavaModelException {
 		this.element = element;
 		this.refactoringRootNode = element instanceof ICompilationUnit ? cu : Util.findASTNode(cu, (IMember)element) ;
 		this.monitor = m;
 		this.scopeRoot = scope;
 		this.settings = settings;
+		this.astCache = astCache;
+		this.searcher = searcher;
+		this.hierarchyCache = hierarchyCache;
+		this.declarationCache = declarationCache;
+	}
+
+	/**
+	 * Records the failure of the tree of the current element and drops the tree
+	 * from further processing.
+	 *
+	 * @throws HarvesterException If the failure is fatal.
+	 */
+	private void fail(final HarvesterException e, final RefactoringStatus status) throws HarvesterException {
+		this.report(e, status);
+		this.notRefactorable.addAll(this.workList.getCurrentComputationTreeElements());
+		this.workList.removeAll(this.notRefactorable);
+		this.instances.removeIf(instance -> this.notRefactorable.contains(instance.element));
 	}
 
 	public Set<Entities> getEntities() {
@@ -78,7 +181,8 @@ public class RefactorableHarvester {
 		// this worklist starts with the immediate type-dependent entities on
 		// null
 		// expressions.
-		final NullSeeder seeder = new NullSeeder(this.element, this.refactoringRootNode, this.settings, this.monitor, this.scopeRoot);
+		final NullSeeder seeder = new NullSeeder(this.element, this.refactoringRootNode, this.settings, this.monitor, this.scopeRoot,
+				this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
 		// if no nulls pass the preconditions, return the Seeder status immediately
 		if (!seeder.process()) {
 			return seeder.getErrors();
@@ -88,75 +192,43 @@ public class RefactorableHarvester {
 		// and put just the IJavaElements into the workList
 		this.workList.addAll(seeder.getCandidates());
 
+		if (this.settings.buildsFlowGraph())
+			return this.propagateOverGraph(seeder.getCandidates(), status);
+
+		if (this.settings.propagatesInParallel())
+			// drains the worklist.
+			this.propagateInParallel(status);
+		// the index makes batching pointless.
+		else if (this.settings.batchesSearches() && !this.searcher.isIndexed())
+			// drains the worklist.
+			this.propagateInBatches(status);
+
 		// while there's more work to do.
 		while (this.workList.hasNext()) {
 			// grab the next element.
 			final IJavaElement searchElement = this.workList.next();
 
-			// build a search pattern to find all occurrences of the
-			// searchElement.
-			final SearchPattern pattern = SearchPattern.createPattern(searchElement,
-					IJavaSearchConstants.ALL_OCCURRENCES, SearchPattern.R_EXACT_MATCH);
-
 			final SearchRequestor requestor = new SearchRequestor() {
 				@Override
 				public void acceptSearchMatch(final SearchMatch match) throws CoreException {
-					if (match.getAccuracy() == SearchMatch.A_ACCURATE && !match.isInsideDocComment()
-					// We are finding import declarations for some reason, they
-					// should be ignored
-							&& ((IJavaElement) match.getElement())
-									.getElementType() != IJavaElement.IMPORT_DECLARATION) {
-						// here, we have search match.
-						// convert the matchingElement to an ASTNode.
-						final ASTNode node = Util.getExactASTNode(match, RefactorableHarvester.this.monitor);
-
-						// now we have the ASTNode corresponding to the match.
-						// process the matching ASTNode.
-						final NullPropagator processor = new NullPropagator(searchElement, node,
-								RefactorableHarvester.this.scopeRoot, RefactorableHarvester.this.settings,
-								RefactorableHarvester.this.monitor);
-
-						processor.process();
-
-						// add to the workList all of the type-dependent stuff
-						// we found.
-						RefactorableHarvester.this.workList.addAll(processor.getCandidates());
-						// add to the set of Instances all of the instances of the entities we found
-						RefactorableHarvester.this.instances.addAll(processor.getInstances());
-					}
+					RefactorableHarvester.this.process(searchElement, match);
 				}
 			};
 
 			// here, we're actually doing the search.
 			try {
-				this.searchEngine.search(pattern,
-						new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, this.scopeRoot,
-						requestor, this.monitor);
+				// find all occurrences of the searchElement, unless another harvester already
+				// did.
+				this.searcher.search(searchElement, IJavaSearchConstants.ALL_OCCURRENCES, requestor, this.monitor);
 
 			} catch (final HarvesterException e) {
-				if (e.getFailure() >= RefactoringStatus.FATAL)
-					throw e;
-				/*
-				 * we create a RefactoringStatus for the elements that failed with Error severity before we remove them
-				 */
-				HarvesterASTException hae = (HarvesterASTException)e;
-				RefactoringStatus s = hae.getInstances().stream()
-						.flatMap(instance -> instance.failures.stream()
-							.map(failure -> Util.createStatusEntry(this.settings, instance, failure)))
-						.collect(RefactoringStatus::new, RefactoringStatus::addEntry, RefactoringStatus::merge);
-				status.merge(s);
-				this.notRefactorable.addAll(this.workList.getCurrentComputationTreeElements());
-				this.workList.removeAll(this.notRefactorable);
-				this.instances.removeIf(instance -> this.notRefactorable.contains(instance.element));
-				continue;
+				this.fail(e, status);
 			}
 		}
 
-		final Set<ComputationNode> computationForest = this.trimForest(this.workList.getComputationForest(),
+		final Set<Set<IJavaElement>> candidateSets = this.trimForest(this.workList.getComputationForest(),
 				this.notRefactorable);
 
-		final Set<Set<IJavaElement>> candidateSets = Util.getElementForest(computationForest);
-
 		// Convert the set of passing type dependent sets into sets of Entities
 		/*
 		 * It is a set of sets of type-dependent entities. You start with the seeds, you
@@ -171,19 +243,339 @@ public class RefactorableHarvester {
 		return status;
 	}
 
+	/**
+	 * Searches for the occurrences of element and parses the compilation units
+	 * containing them ahead of processing, as long as the units parsed ahead for
+	 * the frontier fit their share of the budget of the AST cache. The other units
+	 * are parsed when their matches are processed. Runs concurrently.
+	 *
+	 * @param parsed  The source length of the units parsed ahead so far for the
+	 *                frontier.
+	 * @param monitor Only checked for cancellation.
+	 * @return The processable occurrences of element.
+	 */
+	private List<SearchMatch> prefetch(final IJavaElement element, final AtomicLong parsed,
+			final IProgressMonitor monitor) throws CoreException {
+		final List<SearchMatch> ret = this.searcher.getMatches(element, IJavaSearchConstants.ALL_OCCURRENCES,
+				monitor);
+		final Set<ICompilationUnit> units = new LinkedHashSet<>();
+		for (final SearchMatch match : ret) {
+			final IJavaElement icu = ((IJavaElement) match.getElement()).getAncestor(IJavaElement.COMPILATION_UNIT);
+			if (icu == null || !units.add((ICompilationUnit) icu) || this.astCache.contains((ICompilationUnit) icu))
+				continue;
+			// leave the rest of the budget to the units parsed while processing, so
+			// that they don't evict the ones parsed ahead.
+			if (parsed.addAndGet(Util.getSourceLength((ICompilationUnit) icu)) > this.astCache.getBudget() / 2)
+				break;
+			this.astCache.getCompilationUnit((ICompilationUnit) icu, monitor);
+		}
+		return ret;
+	}
+
+	/**
+	 * Processes a match of an occurrence of searchElement.
+	 */
+	private void process(final IJavaElement searchElement, final SearchMatch match) throws CoreException {
+		final NullPropagator processor = this.propagate(searchElement, match);
+
+		// add to the workList all of the type-dependent stuff
+		// we found.
+		this.workList.addAll(processor.getCandidates());
+		// add to the set of Instances all of the instances of the entities we found
+		this.instances.addAll(processor.getInstances());
+	}
+
+	/**
+	 * Propagates from a match of an occurrence of searchElement.
+	 *
+	 * @return The processor holding the type-dependent elements and instances
+	 *         found.
+	 */
+	private NullPropagator propagate(final IJavaElement searchElement, final SearchMatch match)
+			throws CoreException {
+		// here, we have search match.
+		// convert the matchingElement to an ASTNode.
+		final CompilationUnit root = this.astCache.getCompilationUnit(
+				Util.getIMember((IJavaElement) match.getElement()).getCompilationUnit(), this.monitor);
+		final ASTNode node = Util.getExactASTNode(root, match);
+		if (node == null) {
+			// e.g., the AST doesn't agree with the index. Give up on the set rather than on the run.
+			Util.LOGGER.warning(Messages.Harvester_ASTNodeError + match);
+			throw new HarvesterASTException(Messages.Harvester_ASTNodeError + match, root);
+		}
+
+		// now we have the ASTNode corresponding to the match.
+		// process the matching ASTNode.
+		final NullPropagator processor = new NullPropagator(searchElement, node, this.scopeRoot, this.settings,
+				this.monitor, this.astCache, this.searcher, this.hierarchyCache, this.declarationCache);
+
+		processor.process();
+		return processor;
+	}
+
+	/**
+	 * Propagates through the worklist one frontier batch at a time. The
+	 * occurrences of all elements of a batch are searched for at once, and then
+	 * processed element by element in worklist order, as if each element had been
+	 * searched for on its own.
+	 *
+	 * @param status Collects the failures.
+	 * @throws CoreException
+	 */
+	private void propagateInBatches(final RefactoringStatus status) throws CoreException {
+		while (this.workList.hasNext()) {
+			final List<IJavaElement> frontier = this.workList.nextFrontier(BATCH_SIZE);
+			final Map<IJavaElement, List<SearchMatch>> matches = this.search(frontier);
+
+			for (final IJavaElement searchElement : frontier) {
+				// its tree failed while processing an earlier element of the batch.
+				if (this.notRefactorable.contains(searchElement))
+					continue;
+				this.workList.setCurrent(searchElement);
+				try {
+					if (matches == null)
+						// the batch couldn't be routed, search for it on its own.
+						this.searcher.search(searchElement, IJavaSearchConstants.ALL_OCCURRENCES,
+								new SearchRequestor() {
+									@Override
+									public void acceptSearchMatch(final SearchMatch match) throws CoreException {
+										RefactorableHarvester.this.process(searchElement, match);
+									}
+								}, this.monitor);
+					else
+						for (final SearchMatch match : matches.get(searchElement))
+							this.process(searchElement, match);
+				} catch (final HarvesterException e) {
+					this.fail(e, status);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Propagates through the worklist one frontier of at most
+	 * {@link #FRONTIER_SIZE} elements at a time. The occurrences of the elements
+	 * of a frontier are searched for, and the compilation units containing them
+	 * parsed up to half of the budget of the AST cache, on all cores. The matches
+	 * themselves are still processed one after another, element by element in
+	 * worklist order on this thread, since the ASTs and their bindings can't be
+	 * shared between threads. There are thus no concurrent propagators whose
+	 * results would have to be merged, and the forest and the failures are those
+	 * of the sequential loop.
+	 *
+	 * @param status Collects the failures.
+	 * @throws CoreException
+	 */
+	private void propagateInParallel(final RefactoringStatus status) throws CoreException {
+		while (this.workList.hasNext()) {
+			final List<IJavaElement> frontier = this.workList.nextFrontier(FRONTIER_SIZE);
+			final Map<IJavaElement, ForkJoinTask<List<SearchMatch>>> tasks = new LinkedHashMap<>();
+			final AtomicLong parsed = new AtomicLong();
+			// the monitor of the harvester isn't thread-safe, so the tasks only poll it.
+			final IProgressMonitor taskMonitor = new NullProgressMonitor() {
+				@Override
+				public boolean isCanceled() {
+					return super.isCanceled() || RefactorableHarvester.this.monitor.isCanceled();
+				}
+			};
+			// locals, as well as lookups in the index, are resolved against the cached
+			// ASTs, which is left to this thread.
+			if (!this.searcher.isIndexed())
+				for (final IJavaElement searchElement : frontier)
+					if (!(searchElement instanceof ILocalVariable))
+						tasks.put(searchElement, ForkJoinPool.commonPool()
+								.submit(() -> this.prefetch(searchElement, parsed, taskMonitor)));
+
+			try {
+				for (final IJavaElement searchElement : frontier) {
+					// its tree failed while processing an earlier element of the frontier.
+					if (this.notRefactorable.contains(searchElement))
+						continue;
+					this.workList.setCurrent(searchElement);
+					try {
+						final ForkJoinTask<List<SearchMatch>> task = tasks.get(searchElement);
+						final List<SearchMatch> matches = task == null
+								? this.searcher.getMatches(searchElement, IJavaSearchConstants.ALL_OCCURRENCES,
+										this.monitor)
+								: Util.join(task);
+						for (final SearchMatch match : matches)
+							this.process(searchElement, match);
+					} catch (final HarvesterException e) {
+						this.fail(e, status);
+					}
+				}
+			} finally {
+				// don't start any more, nor finish the ones in flight, if processing failed.
+				taskMonitor.setCanceled(true);
+				for (final ForkJoinTask<List<SearchMatch>> task : tasks.values())
+					task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Builds the complete null flow graph reachable from the seeds, visiting each
+	 * node once in breadth-first order, and then creates the entities from its
+	 * connected components. As when a tree of the worklist fails, the nodes whose
+	 * component already contains a failed node aren't searched for, and their
+	 * failures aren't reported, since the whole component is dropped.
+	 *
+	 * @param seeds  The elements seeded by null literals.
+	 * @param status Collects the failures.
+	 * @return status merged with the statuses of the entities.
+	 * @throws CoreException
+	 */
+	private RefactoringStatus propagateOverGraph(final Set<IJavaElement> seeds, final RefactoringStatus status)
+			throws CoreException {
+		final NullFlowGraph graph = new NullFlowGraph();
+		final Deque<IJavaElement> pending = new ArrayDeque<>();
+		for (final IJavaElement seed : seeds)
+			if (graph.addNode(seed))
+				pending.add(seed);
+
+		while (!pending.isEmpty()) {
+			final IJavaElement searchElement = pending.remove();
+			if (graph.isFailed(searchElement))
+				continue;
+			try {
+				this.searcher.search(searchElement, IJavaSearchConstants.ALL_OCCURRENCES, new SearchRequestor() {
+					@Override
+					public void acceptSearchMatch(final SearchMatch match) throws CoreException {
+						final NullPropagator processor = RefactorableHarvester.this.propagate(searchElement, match);
+						for (final IJavaElement candidate : processor.getCandidates())
+							if (graph.addEdge(searchElement, candidate))
+								pending.add(candidate);
+						graph.addInstances(processor.getInstances());
+					}
+				}, this.monitor);
+			} catch (final HarvesterException e) {
+				// e.g., the component was joined to a failed one while searching.
+				if (e.getFailure() < RefactoringStatus.FATAL && graph.isFailed(searchElement))
+					continue;
+				this.report(e, status);
+				graph.fail(searchElement);
+			}
+		}
+		Util.LOGGER.fine(graph.toString());
+
+		for (final Set<IJavaElement> component : graph.getComponents())
+			this.entities.add(Entities.create(component, graph.getInstances(component), this.settings));
+
+		status.merge(this.entities.stream().map(Entities::status).collect(RefactoringStatus::new,
+				RefactoringStatus::merge, RefactoringStatus::merge));
+		return status;
+	}
+
+	/**
+	 * Merges the failures carried by e into status.
+	 *
+	 * @throws HarvesterException If the failure is fatal.
+	 */
+	private void report(final HarvesterException e, final RefactoringStatus status) throws HarvesterException {
+		if (e.getFailure() >= RefactoringStatus.FATAL)
+			throw e;
+		/*
+		 * we create a RefactoringStatus for the elements that failed with Error severity before we remove them
+		 */
+		HarvesterASTException hae = (HarvesterASTException)e;
+		RefactoringStatus s = hae.getInstances().stream()
+				.flatMap(instance -> instance.failures.stream()
+					.map(failure -> Util.createStatusEntry(this.settings, instance, failure)))
+				.collect(RefactoringStatus::new, RefactoringStatus::addEntry, RefactoringStatus::merge);
+		status.merge(s);
+	}
+
 	private void reset() {
 		this.workList.clear();
 		this.notRefactorable.clear();
 		this.instances.clear();
 	}
 
-	private Set<ComputationNode> trimForest(final Set<ComputationNode> computationForest,
+	/**
+	 * Searches for the occurrences of all elements at once and routes each match
+	 * to the element it's an occurrence of. Local variables and elements whose
+	 * occurrences are already cached by the searcher are left out of the search,
+	 * and the routed matches of the others are added to the cache.
+	 *
+	 * @param elements The elements to search for.
+	 * @return The processable matches of each element, in the order they were
+	 *         found, or <code>null</code> if a match could not be routed to exactly
+	 *         one of the elements.
+	 * @throws CoreException
+	 */
+	private Map<IJavaElement, List<SearchMatch>> search(final List<IJavaElement> elements) throws CoreException {
+		final Map<IJavaElement, List<SearchMatch>> ret = new LinkedHashMap<>();
+		final Map<IJavaElement, List<SearchMatch>> uncached = new LinkedHashMap<>();
+		SearchPattern pattern = null;
+		for (final IJavaElement element : elements) {
+			// locals are found without the search engine.
+			final List<SearchMatch> known = element instanceof ILocalVariable
+					? this.searcher.getMatches(element, IJavaSearchConstants.ALL_OCCURRENCES, this.monitor)
+					: this.searcher.getCached(element, IJavaSearchConstants.ALL_OCCURRENCES);
+			if (known != null) {
+				ret.put(element, known);
+				continue;
+			}
+			final SearchPattern elementPattern = createPattern(element);
+			if (elementPattern == null)
+				return null;
+			pattern = pattern == null ? elementPattern : SearchPattern.createOrPattern(pattern, elementPattern);
+			final List<SearchMatch> elementMatches = new ArrayList<>();
+			ret.put(element, elementMatches);
+			uncached.put(element, elementMatches);
+		}
+		if (pattern == null)
+			return ret;
+
+		final boolean[] routed = { true };
+		this.searcher.search(pattern, new SearchRequestor() {
+			@Override
+			public void acceptSearchMatch(final SearchMatch match) throws CoreException {
+				if (!routed[0] || !OccurrenceSearcher.isProcessable(match))
+					return;
+				final List<SearchMatch> elementMatches = uncached
+						.get(RefactorableHarvester.this.route(match, uncached.keySet()));
+				if (elementMatches == null)
+					routed[0] = false;
+				else
+					elementMatches.add(match);
+			}
+		}, this.monitor);
+		if (!routed[0])
+			return null;
+		for (final Map.Entry<IJavaElement, List<SearchMatch>> entry : uncached.entrySet())
+			this.searcher.put(entry.getKey(), IJavaSearchConstants.ALL_OCCURRENCES, entry.getValue());
+		return ret;
+	}
+
+	/**
+	 * @param match    A match of the disjunction of the elements' patterns.
+	 * @param elements The elements searched for.
+	 * @return The element of elements that match is an occurrence of, or
+	 *         <code>null</code> if there is no such unique element.
+	 */
+	private IJavaElement route(final SearchMatch match, final Set<IJavaElement> elements) {
+		final ASTNode node = Util.getExactASTNode(match, this.astCache, this.monitor);
+		if (node == null)
+			return null;
+		final List<ASTNode> candidates = ASTNodeIndex.of((CompilationUnit) node.getRoot())
+				.findAll(match.getOffset());
+		// the innermost node naming an element decides.
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			final IJavaElement occurrence = resolveOccurrence(candidates.get(i));
+			if (occurrence != null)
+				return elements.contains(occurrence) ? occurrence : null;
+		}
+		return null;
+	}
+
+	private Set<Set<IJavaElement>> trimForest(final ComputationForest computationForest,
 			final Set<IJavaElement> nonEnumerizableList) {
-		final Set<ComputationNode> ret = new LinkedHashSet<>(computationForest);
-		final TreeTrimingVisitor visitor = new TreeTrimingVisitor(ret, nonEnumerizableList);
-		// for each root in the computation forest
-		for (final ComputationNode root : computationForest)
-			root.accept(visitor);
+		final Set<Set<IJavaElement>> ret = new LinkedHashSet<>();
+		// drop the trees containing any of the elements.
+		for (final Set<IJavaElement> tree : computationForest.getSets())
+			if (Collections.disjoint(tree, nonEnumerizableList))
+				ret.add(tree);
 		return ret;
 	}
 
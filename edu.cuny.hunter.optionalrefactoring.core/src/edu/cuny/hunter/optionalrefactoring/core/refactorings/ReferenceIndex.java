@@ -0,0 +1,393 @@
+package edu.cuny.hunter.optionalrefactoring.core.refactorings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.ILocalVariable;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.ISourceReference;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.Javadoc;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.LocalVariableDeclarationMatch;
+import org.eclipse.jdt.core.search.MethodDeclarationMatch;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTCache;
+import edu.cuny.hunter.optionalrefactoring.core.utils.ASTNodeIndex;
+
+/**
+ * An in-memory def-use index of the source compilation units in the scope of a
+ * refactoring. It maps the binding key of each field, local variable, parameter
+ * and method to the positions of its declarations and references, so that the
+ * occurrences of an element are a hash lookup instead of a search.
+ *
+ * The index is built with a single binding-resolved pass over the units and
+ * retains no ASTs, only the positions of the occurrences and the handles of the
+ * elements they're reported for. Matches are reported the way the search
+ * engine reports them: at the name of the element, or at the start of
+ * constructor invocations, for the member enclosing the occurrence, except
+ * that the declarations of local variables and parameters are reported for the
+ * {@link ILocalVariable} itself.
+ */
+class ReferenceIndex {
+
+	/**
+	 * A position of an element in the source.
+	 */
+	private static final class Occurrence {
+		/**
+		 * The local variable declared here, or the member enclosing the occurrence.
+		 */
+		final IJavaElement element;
+		final int offset;
+		final int length;
+		final boolean declaration;
+		final boolean method;
+
+		Occurrence(final IJavaElement element, final int offset, final int length, final boolean declaration,
+				final boolean method) {
+			this.element = element;
+			this.offset = offset;
+			this.length = length;
+			this.declaration = declaration;
+			this.method = method;
+		}
+
+		SearchMatch toMatch() {
+			// parameter discovery tells method declarations apart by their type.
+			if (this.declaration && this.method)
+				return new MethodDeclarationMatch(this.element, SearchMatch.A_ACCURATE, this.offset, this.length,
+						SearchEngine.getDefaultSearchParticipant(), this.element.getResource());
+			if (this.element instanceof ILocalVariable)
+				return new LocalVariableDeclarationMatch(this.element, SearchMatch.A_ACCURATE, this.offset,
+						this.length, SearchEngine.getDefaultSearchParticipant(), this.element.getResource());
+			return new SearchMatch(this.element, SearchMatch.A_ACCURATE, this.offset, this.length,
+					SearchEngine.getDefaultSearchParticipant(), this.element.getResource());
+		}
+	}
+
+	/**
+	 * @param units   The source compilation units to index.
+	 * @param scope   Only occurrences within the scope are indexed.
+	 * @param cache   Receives the ASTs parsed while indexing.
+	 * @param monitor
+	 * @return The index of the occurrences in units.
+	 * @throws CoreException
+	 */
+	static ReferenceIndex create(final Collection<ICompilationUnit> units, final IJavaSearchScope scope,
+			final ASTCache cache, final IProgressMonitor monitor) throws CoreException {
+		final ReferenceIndex ret = new ReferenceIndex(cache);
+		final Map<IJavaProject, List<ICompilationUnit>> projects = new LinkedHashMap<>();
+		for (final ICompilationUnit unit : units)
+			projects.computeIfAbsent(unit.getJavaProject(), p -> new ArrayList<>()).add(unit);
+
+		final SubMonitor subMonitor = SubMonitor.convert(monitor, units.size());
+		for (final Map.Entry<IJavaProject, List<ICompilationUnit>> entry : projects.entrySet()) {
+			final ASTParser parser = ASTParser.newParser(AST.JLS8);
+			parser.setProject(entry.getKey());
+			parser.setResolveBindings(true);
+			// null for primary compilation units.
+			parser.setWorkingCopyOwner(entry.getValue().get(0).getOwner());
+			final ASTRequestor requestor = new ASTRequestor() {
+				@Override
+				public void acceptAST(final ICompilationUnit source, final CompilationUnit ast) {
+					cache.put(source, ast);
+					ret.index(source, ast, scope);
+				}
+			};
+			final List<ICompilationUnit> projectUnits = entry.getValue();
+			parser.createASTs(projectUnits.toArray(new ICompilationUnit[projectUnits.size()]), new String[0],
+					requestor, subMonitor.split(projectUnits.size()));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return The key of the declaration of binding if it's the binding of an
+	 *         element the index tracks, and <code>null</code> otherwise.
+	 */
+	private static String getDeclarationKey(final IBinding binding) {
+		if (binding instanceof IVariableBinding)
+			return ((IVariableBinding) binding).getVariableDeclaration().getKey();
+		if (binding instanceof IMethodBinding)
+			return ((IMethodBinding) binding).getMethodDeclaration().getKey();
+		return null;
+	}
+
+	private final ASTCache astCache;
+
+	private final Map<String, List<Occurrence>> occurrences = new HashMap<>();
+
+	/**
+	 * The keys of the elements searched for so far.
+	 */
+	private final Map<IJavaElement, String> keys = new HashMap<>();
+
+	private ReferenceIndex(final ASTCache astCache) {
+		this.astCache = astCache;
+	}
+
+	private void add(final IBinding binding, final IJavaElement enclosingElement, final int offset, final int length,
+			final boolean declaration) {
+		final String key = binding == null ? null : getDeclarationKey(binding);
+		if (key == null)
+			return;
+		IJavaElement element = enclosingElement;
+		// like the search engine.
+		if (declaration && binding instanceof IVariableBinding && !((IVariableBinding) binding).isField()) {
+			final IJavaElement local = binding.getJavaElement();
+			if (local instanceof ILocalVariable)
+				element = local;
+		}
+		this.occurrences.computeIfAbsent(key, k -> new ArrayList<>(2))
+				.add(new Occurrence(element, offset, length, declaration, binding instanceof IMethodBinding));
+	}
+
+	/**
+	 * @return The binding key of element, or <code>null</code> if the index can't
+	 *         tell it, e.g., if element isn't declared in source.
+	 */
+	private String getKey(final IJavaElement element, final IProgressMonitor monitor) throws CoreException {
+		if (this.keys.containsKey(element))
+			return this.keys.get(element);
+		String ret = null;
+		final ICompilationUnit icu = (ICompilationUnit) element.getAncestor(IJavaElement.COMPILATION_UNIT);
+		if (icu != null && (element instanceof IMember || element instanceof ILocalVariable)) {
+			final ISourceRange nameRange = ((ISourceReference) element).getNameRange();
+			if (nameRange != null && nameRange.getOffset() >= 0) {
+				final ASTNode name = ASTNodeIndex.of(this.astCache.getCompilationUnit(icu, monitor))
+						.find(nameRange.getOffset(), nameRange.getLength(), ASTNode.SIMPLE_NAME);
+				if (name != null) {
+					final IBinding binding = ((SimpleName) name).resolveBinding();
+					ret = binding == null ? null : getDeclarationKey(binding);
+				}
+			}
+		}
+		this.keys.put(element, ret);
+		return ret;
+	}
+
+	private void index(final ICompilationUnit icu, final CompilationUnit root, final IJavaSearchScope scope) {
+		root.accept(new ASTVisitor() {
+
+			private final Deque<IJavaElement> enclosing = new ArrayDeque<>(Collections.singleton(icu));
+
+			private void add(final IBinding binding, final ASTNode node, final boolean declaration) {
+				final IJavaElement enclosingElement = this.enclosing.peek();
+				if (scope.encloses(enclosingElement))
+					ReferenceIndex.this.add(binding, enclosingElement, node.getStartPosition(), node.getLength(),
+							declaration);
+			}
+
+			@Override
+			public void endVisit(final AnnotationTypeDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final AnnotationTypeMemberDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final AnonymousClassDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final EnumConstantDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final EnumDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final Initializer node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final MethodDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final TypeDeclaration node) {
+				this.enclosing.pop();
+			}
+
+			@Override
+			public void endVisit(final VariableDeclarationFragment node) {
+				if (node.getParent() instanceof FieldDeclaration)
+					this.enclosing.pop();
+			}
+
+			private void push(final IBinding binding, final ASTNode node) {
+				IJavaElement element = binding == null ? null : binding.getJavaElement();
+				if (element == null)
+					try {
+						element = icu.getElementAt(node.getStartPosition());
+					} catch (final CoreException e) {
+						// keep the outer element.
+					}
+				this.enclosing.push(element == null ? this.enclosing.peek() : element);
+			}
+
+			@Override
+			public boolean visit(final AnnotationTypeDeclaration node) {
+				return this.visitType(node);
+			}
+
+			@Override
+			public boolean visit(final AnnotationTypeMemberDeclaration node) {
+				this.push(node.resolveBinding(), node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final AnonymousClassDeclaration node) {
+				this.push(node.resolveBinding(), node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final ClassInstanceCreation node) {
+				this.add(node.resolveConstructorBinding(), node, false);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final ConstructorInvocation node) {
+				this.add(node.resolveConstructorBinding(), node, false);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final EnumConstantDeclaration node) {
+				this.push(node.resolveVariable(), node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final EnumDeclaration node) {
+				return this.visitType(node);
+			}
+
+			@Override
+			public boolean visit(final Initializer node) {
+				this.push(null, node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final Javadoc node) {
+				// the search engine's matches in comments are ignored anyway.
+				return false;
+			}
+
+			@Override
+			public boolean visit(final MethodDeclaration node) {
+				this.push(node.resolveBinding(), node);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final SimpleName node) {
+				this.add(node.resolveBinding(), node, node.isDeclaration());
+				return false;
+			}
+
+			@Override
+			public boolean visit(final SuperConstructorInvocation node) {
+				this.add(node.resolveConstructorBinding(), node, false);
+				return true;
+			}
+
+			@Override
+			public boolean visit(final TypeDeclaration node) {
+				return this.visitType(node);
+			}
+
+			@Override
+			public boolean visit(final VariableDeclarationFragment node) {
+				if (node.getParent() instanceof FieldDeclaration)
+					this.push(node.resolveBinding(), node);
+				return true;
+			}
+
+			private boolean visitType(final AbstractTypeDeclaration node) {
+				this.push(node.resolveBinding(), node);
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Reports the indexed occurrences of element to requestor.
+	 *
+	 * @param element   The element to look up.
+	 * @param limitTo   {@link IJavaSearchConstants#DECLARATIONS},
+	 *                  {@link IJavaSearchConstants#REFERENCES} or
+	 *                  {@link IJavaSearchConstants#ALL_OCCURRENCES}.
+	 * @param requestor Receives the matches.
+	 * @param monitor
+	 * @return false if element can't be looked up in the index, in which case
+	 *         nothing is reported.
+	 * @throws CoreException
+	 */
+	boolean search(final IJavaElement element, final int limitTo, final SearchRequestor requestor,
+			final IProgressMonitor monitor) throws CoreException {
+		final String key = this.getKey(element, monitor);
+		if (key == null)
+			return false;
+		for (final Occurrence occurrence : this.occurrences.getOrDefault(key, Collections.emptyList()))
+			if (limitTo == IJavaSearchConstants.ALL_OCCURRENCES
+					|| occurrence.declaration == (limitTo == IJavaSearchConstants.DECLARATIONS))
+				requestor.acceptSearchMatch(occurrence.toMatch());
+		return true;
+	}
+}
@@ -1,9 +1,9 @@
 package edu.cuny.hunter.optionalrefactoring.core.refactorings;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jdt.core.IJavaElement;
@@ -25,11 +25,12 @@ public class WorkList extends LinkedHashSet<IJavaElement> implements Iterable<IJ
 			return false;
 	}
 
-	private final Set<ComputationNode> computationForest = new LinkedHashSet<>();
+	private final ComputationForest computationForest = new ComputationForest();
 
-	private ValuedComputationNode currentNode;
-
-	private final Map<IJavaElement, ValuedComputationNode> elemToNode = new HashMap<>();
+	/**
+	 * The element being processed, on which the elements added next depend.
+	 */
+	private IJavaElement currentElement;
 
 	@Override
 	public boolean add(final IJavaElement element) {
@@ -39,39 +40,19 @@ public class WorkList extends LinkedHashSet<IJavaElement> implements Iterable<IJ
 		// throw new RuntimeException(e);
 		// }
 
-		final ValuedComputationNode elemNode = this.elemToNode.get(element);
-
-		if (elemNode != null) // its been seen before.
+		if (!this.computationForest.add(element)) // its been seen before.
 		{
-			// get the roots.
-			final ComputationNode elemNodeRoot = elemNode.getRoot();
-			final ComputationNode currNodeRoot = this.currentNode.getRoot();
-
-			if (elemNodeRoot != currNodeRoot) {
-				// union the trees.
-				final ComputationNode unionNode = this.union(elemNodeRoot, currNodeRoot);
-
-				// remove the old trees from the forest.
-				this.computationForest.remove(elemNodeRoot);
-				this.computationForest.remove(currNodeRoot);
-
-				// add the new tree to the forest.
-				this.computationForest.add(unionNode);
-			}
-
+			// union the trees.
+			if (this.currentElement != null)
+				this.computationForest.union(element, this.currentElement);
 			return false;
 		}
 
 		else // it has not been seen before.
 		{
-			final ValuedComputationNode node = new ValuedComputationNode(element);
-			this.elemToNode.put(element, node);
-			if (this.currentNode == null)
-				// seed the comp forest.
-				this.computationForest.add(node);
-			else
-				// attach the new node.
-				this.currentNode.makeParent(node);
+			if (this.currentElement != null)
+				// attach the new element.
+				this.computationForest.union(this.currentElement, element);
 			return super.add(element);
 		}
 	}
@@ -83,22 +64,21 @@ public class WorkList extends LinkedHashSet<IJavaElement> implements Iterable<IJ
 		return changed;
 	}
 
-	public Set<ComputationNode> getComputationForest() {
+	public ComputationForest getComputationForest() {
 		return this.computationForest;
 	}
 
 	public Set<IJavaElement> getCurrentComputationTreeElements() {
-		// find the tree in the forest that contains the current node.
-		final ComputationNode root = this.currentNode.getRoot();
-		return root.getComputationTreeElements();
+		// find the tree in the forest that contains the current element.
+		return this.computationForest.getSet(this.currentElement);
 	}
 
-	public ValuedComputationNode getCurrentNode() {
-		return this.currentNode;
+	public IJavaElement getCurrentElement() {
+		return this.currentElement;
 	}
 
 	public Set<IJavaElement> getSeen() {
-		return this.elemToNode.keySet();
+		return this.computationForest.getElements();
 	}
 
 	public boolean hasNext() {
@@ -108,11 +88,27 @@ public class WorkList extends LinkedHashSet<IJavaElement> implements Iterable<IJ
 	public IJavaElement next() {
 		final Iterator<IJavaElement> it = this.iterator();
 		final IJavaElement ret = it.next();
-		this.currentNode = this.elemToNode.get(ret);
+		this.currentElement = ret;
 		it.remove();
 		return ret;
 	}
 
+	/**
+	 * Removes the frontier, i.e., the elements that are waiting to be processed,
+	 * without making any of them current.
+	 *
+	 * @param max The maximum number of elements to remove.
+	 * @return The removed elements, in the order they were added.
+	 */
+	public List<IJavaElement> nextFrontier(final int max) {
+		final List<IJavaElement> ret = new ArrayList<>(Math.min(max, this.size()));
+		for (final Iterator<IJavaElement> it = this.iterator(); it.hasNext() && ret.size() < max;) {
+			ret.add(it.next());
+			it.remove();
+		}
+		return ret;
+	}
+
 	public void remove() {
 		this.iterator().remove();
 	}
@@ -164,11 +160,15 @@ public class WorkList extends LinkedHashSet<IJavaElement> implements Iterable<IJ
 	// }
 	// }
 
-	private ComputationNode union(final ComputationNode root1, final ComputationNode root2) {
-		final ComputationNode ret = new UnionComputationNode();
-		ret.makeParent(root1);
-		ret.makeParent(root2);
-		return ret;
+	/**
+	 * Makes the given element, previously removed with
+	 * {@link #nextFrontier(int)}, the one being processed so that the elements
+	 * added next depend on it.
+	 *
+	 * @param element A previously added element.
+	 */
+	public void setCurrent(final IJavaElement element) {
+		this.currentElement = element;
 	}
 
 }
@@ -0,0 +1,233 @@
+package edu.cuny.hunter.optionalrefactoring.core.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * A run-scoped cache of binding-resolved ASTs keyed by
+ * {@link ICompilationUnit}. Seeding, propagation, parameter discovery and
+ * change creation all obtain their ASTs through this cache so that a file
+ * reached from many search matches is only parsed once per run. The ASTs shared
+ * by open Java editors are never cached, since they belong to the editors and
+ * the cached ASTs are annotated with node indexes and read from several threads.
+ *
+ * Units are parsed outside of the cache's lock, so that different units can be
+ * parsed concurrently.
+ *
+ * Entries are evicted in least-recently-used order once the total source length
+ * of the retained ASTs exceeds the budget. Source length is used as a cheap
+ * proxy for the memory held by an AST and its bindings.
+ *
+ * ASTs parsed without method bodies, which suffice for looking up declarations,
+ * are retained separately under the same budget so that they are never handed
+ * out in place of complete ASTs.
+ */
+public class ASTCache {
+
+	/**
+	 * The default budget, in characters of source, of the ASTs retained at once.
+	 */
+	public static final long DEFAULT_BUDGET = 16 * 1024 * 1024;
+
+	private final LinkedHashMap<ICompilationUnit, CompilationUnit> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final LinkedHashMap<ICompilationUnit, CompilationUnit> declarationCache = new LinkedHashMap<>(16, 0.75f,
+			true);
+
+	private final long budget;
+
+	private final TimeCollector parseTimeCollector;
+
+	private long size;
+
+	private long declarationSize;
+
+	private int hits;
+
+	private int misses;
+
+	private int evictions;
+
+	public ASTCache(final TimeCollector parseTimeCollector) {
+		this(DEFAULT_BUDGET, parseTimeCollector);
+	}
+
+	/**
+	 * @param budget             The maximum total source length, in characters,
+	 *                           of the retained ASTs.
+	 * @param parseTimeCollector Collects the time spent parsing on a miss.
+	 */
+	public ASTCache(final long budget, final TimeCollector parseTimeCollector) {
+		this.budget = budget;
+		this.parseTimeCollector = parseTimeCollector;
+	}
+
+	public synchronized void clear() {
+		this.cache.clear();
+		this.declarationCache.clear();
+		this.size = 0;
+		this.declarationSize = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	public synchronized boolean contains(final ICompilationUnit icu) {
+		return this.cache.containsKey(icu);
+	}
+
+	private void evict() {
+		// declaration ASTs are cheaper to recreate, so they go first.
+		final Iterator<Map.Entry<ICompilationUnit, CompilationUnit>> declarations = this.declarationCache.entrySet()
+				.iterator();
+		while (this.size + this.declarationSize > this.budget && declarations.hasNext()) {
+			this.declarationSize -= declarations.next().getValue().getLength();
+			declarations.remove();
+			this.evictions++;
+		}
+		final Iterator<Map.Entry<ICompilationUnit, CompilationUnit>> it = this.cache.entrySet().iterator();
+		// always retain the most recently used entry.
+		while (this.size > this.budget && this.cache.size() > 1) {
+			final Map.Entry<ICompilationUnit, CompilationUnit> eldest = it.next();
+			this.size -= eldest.getValue().getLength();
+			it.remove();
+			this.evictions++;
+		}
+	}
+
+	/**
+	 * @param icu The compilation unit to obtain the AST for.
+	 * @return The complete binding-resolved AST of icu if it's cached, and
+	 *         <code>null</code> otherwise.
+	 */
+	public synchronized CompilationUnit getAvailable(final ICompilationUnit icu) {
+		final CompilationUnit ret = this.cache.get(icu);
+		if (ret != null)
+			this.hits++;
+		return ret;
+	}
+
+	private CompilationUnit getCachedDeclarations(final ICompilationUnit icu) {
+		final CompilationUnit ret = this.cache.get(icu);
+		return ret == null ? this.declarationCache.get(icu) : ret;
+	}
+
+	/**
+	 * @param icu     The compilation unit to obtain the AST for.
+	 * @param monitor The progress monitor used if the compilation unit must be
+	 *                parsed.
+	 * @return The cached binding-resolved AST of icu, parsing it on a miss.
+	 */
+	public CompilationUnit getCompilationUnit(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		synchronized (this) {
+			final CompilationUnit cached = this.cache.get(icu);
+			if (cached != null) {
+				this.hits++;
+				return cached;
+			}
+			this.misses++;
+		}
+		// other units may be parsed meanwhile.
+		final CompilationUnit ret;
+		this.parseTimeCollector.start();
+		try {
+			ret = Util.getCompilationUnit(icu, monitor);
+		} finally {
+			this.parseTimeCollector.stop();
+		}
+		synchronized (this) {
+			// keep the first one in case of a race so that all callers share it.
+			final CompilationUnit cached = this.cache.get(icu);
+			if (cached != null)
+				return cached;
+			this.put(icu, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param icu     The compilation unit to obtain the AST for.
+	 * @param monitor The progress monitor used if the compilation unit must be
+	 *                parsed.
+	 * @return A binding-resolved AST of icu that is complete at least for the
+	 *         declarations, i.e., the cached complete AST if there is one, or an
+	 *         AST parsed without method bodies otherwise.
+	 */
+	public CompilationUnit getDeclarations(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		synchronized (this) {
+			final CompilationUnit cached = this.getCachedDeclarations(icu);
+			if (cached != null) {
+				this.hits++;
+				return cached;
+			}
+			this.misses++;
+		}
+		// other units may be parsed meanwhile.
+		final CompilationUnit ret;
+		this.parseTimeCollector.start();
+		try {
+			ret = Util.getDeclarationCompilationUnit(icu, monitor);
+		} finally {
+			this.parseTimeCollector.stop();
+		}
+		synchronized (this) {
+			// keep the first one in case of a race so that all callers share it.
+			final CompilationUnit cached = this.getCachedDeclarations(icu);
+			if (cached != null)
+				return cached;
+			this.declarationCache.put(icu, ret);
+			this.declarationSize += ret.getLength();
+			this.evict();
+		}
+		return ret;
+	}
+
+	/**
+	 * @return The maximum total source length, in characters, of the retained
+	 *         ASTs.
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	public synchronized int getEvictions() {
+		return this.evictions;
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Adds an AST that was obtained elsewhere to the cache.
+	 *
+	 * @param icu  The compilation unit.
+	 * @param root The binding-resolved AST of icu.
+	 */
+	public synchronized void put(final ICompilationUnit icu, final CompilationUnit root) {
+		final CompilationUnit old = this.cache.put(icu, root);
+		if (old != null)
+			this.size -= old.getLength();
+		this.size += root.getLength();
+		// superseded by the complete AST.
+		final CompilationUnit declarations = this.declarationCache.remove(icu);
+		if (declarations != null)
+			this.declarationSize -= declarations.getLength();
+		this.evict();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ASTCache [entries=" + this.cache.size() + ", declarationEntries=" + this.declarationCache.size() //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+}
@@ -1,9 +1,14 @@
 package edu.cuny.hunter.optionalrefactoring.core.utils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CastExpression;
@@ -29,23 +34,159 @@ import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 public class ASTNodeFinder {
 
+	/**
+	 * Identifies candidate nodes by their node type and source range.
+	 */
+	private static final class RangeKey {
+		private final int nodeType;
+		private final int start;
+		private final int length;
+
+		RangeKey(final ASTNode node) {
+			this(node.getNodeType(), node.getStartPosition(), node.getLength());
+		}
+
+		RangeKey(final int nodeType, final int start, final int length) {
+			this.nodeType = nodeType;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof RangeKey))
+				return false;
+			final RangeKey other = (RangeKey) obj;
+			return this.nodeType == other.nodeType && this.start == other.start && this.length == other.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.nodeType * 31 + this.start) * 31 + this.length;
+		}
+	}
+
+	private static final String INDEX_PROPERTY = ASTNodeFinder.class.getName();
+
 	public static ASTNodeFinder create(final CompilationUnit scope) {
 		return new ASTNodeFinder(scope);
 	}
 
+	/**
+	 * The index is built once per root and kept as a property of it, so every
+	 * finder created for the same rewrite root shares it.
+	 *
+	 * @param scope The root to index.
+	 * @return The nodes of the types {@link #find(ASTNode)} can look for, keyed by
+	 *         node type and source range, each list in pre-order.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<RangeKey, List<ASTNode>> getIndex(final CompilationUnit scope) {
+		synchronized (scope) {
+			Map<RangeKey, List<ASTNode>> ret = (Map<RangeKey, List<ASTNode>>) scope.getProperty(INDEX_PROPERTY);
+			if (ret == null) {
+				final Map<RangeKey, List<ASTNode>> index = new HashMap<>();
+				scope.accept(new ASTVisitor() {
+					@Override
+					public void preVisit(final ASTNode node) {
+						if (isFindable(node))
+							index.computeIfAbsent(new RangeKey(node), k -> new ArrayList<>(1)).add(node);
+					}
+				});
+				ret = index;
+				scope.setProperty(INDEX_PROPERTY, ret);
+			}
+			return ret;
+		}
+	}
+
+	private static boolean isFindable(final ASTNode node) {
+		return isFindable(node.getNodeType());
+	}
+
+	private static boolean isFindable(final int nodeType) {
+		switch (nodeType) {
+		case ASTNode.CAST_EXPRESSION:
+		case ASTNode.CLASS_INSTANCE_CREATION:
+		case ASTNode.CONSTRUCTOR_INVOCATION:
+		case ASTNode.ENHANCED_FOR_STATEMENT:
+		case ASTNode.FIELD_ACCESS:
+		case ASTNode.FIELD_DECLARATION:
+		case ASTNode.INSTANCEOF_EXPRESSION:
+		case ASTNode.METHOD_DECLARATION:
+		case ASTNode.METHOD_INVOCATION:
+		case ASTNode.QUALIFIED_NAME:
+		case ASTNode.SIMPLE_NAME:
+		case ASTNode.SINGLE_VARIABLE_DECLARATION:
+		case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+		case ASTNode.SUPER_FIELD_ACCESS:
+		case ASTNode.SUPER_METHOD_INVOCATION:
+		case ASTNode.VARIABLE_DECLARATION_EXPRESSION:
+		case ASTNode.VARIABLE_DECLARATION_FRAGMENT:
+		case ASTNode.VARIABLE_DECLARATION_STATEMENT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	private final ASTNode scope;
 
 	private final List<TypeDeclaration> types;
 
 	private final List<ASTNode> targetNodes = new LinkedList<>();
 
+	private final Map<RangeKey, List<ASTNode>> index;
+
 	@SuppressWarnings("unchecked")
 	private ASTNodeFinder(final CompilationUnit scope) {
 		this.scope = scope;
 		this.types = scope.types();
+		this.index = getIndex(scope);
 	}
 
+	/**
+	 * Finds the node in the scope corresponding to target, a node of another AST
+	 * of the same source. Candidates are looked up by node type and source range,
+	 * and structural matching is only used to confirm them.
+	 *
+	 * @param target The node to look for.
+	 * @return The corresponding node in the scope, or <code>null</code> if there is
+	 *         none.
+	 */
 	public ASTNode find(final ASTNode target) {
+		final List<ASTNode> candidates = this.index.get(new RangeKey(target));
+		if (candidates != null)
+			for (int i = candidates.size() - 1; i >= 0; i--) {
+				final ASTNode candidate = candidates.get(i);
+				if (candidate.subtreeMatch(new ASTMatcher(), target))
+					return candidate;
+			}
+		// the source may have moved since target was harvested.
+		return this.scan(target);
+	}
+
+	/**
+	 * Finds the node in the scope with the given node type and source range.
+	 *
+	 * @param nodeType The type of the node to look for.
+	 * @param range    The source range of the node to look for.
+	 * @return The innermost such node, or <code>null</code> if there is none.
+	 */
+	public ASTNode find(final int nodeType, final ISourceRange range) {
+		if (!isFindable(nodeType))
+			return ASTNodeIndex.of((CompilationUnit) this.scope).find(range.getOffset(), range.getLength(),
+					nodeType);
+		final List<ASTNode> candidates = this.index
+				.get(new RangeKey(nodeType, range.getOffset(), range.getLength()));
+		return candidates == null ? null : candidates.get(candidates.size() - 1);
+	}
+
+	/**
+	 * @param target The node to look for.
+	 * @return The last node in the scope structurally matching target.
+	 */
+	private ASTNode scan(final ASTNode target) {
 		final ASTNode[] ret = { null };
 		this.scope.accept(new ASTVisitor() {
 			@Override
@@ -0,0 +1,139 @@
+package edu.cuny.hunter.optionalrefactoring.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * An index of the nodes of a {@link CompilationUnit} by source position. It is
+ * built once per AST and stored as a property of the AST's root, so it is
+ * cached alongside the AST and released together with it. Lookups are binary
+ * searches over the start positions of the nodes.
+ */
+public class ASTNodeIndex {
+
+	private static final String PROPERTY = ASTNodeIndex.class.getName();
+
+	/**
+	 * @param root The AST to index.
+	 * @return The index of root, building it on first use.
+	 */
+	public static ASTNodeIndex of(final CompilationUnit root) {
+		synchronized (root) {
+			ASTNodeIndex ret = (ASTNodeIndex) root.getProperty(PROPERTY);
+			if (ret == null) {
+				ret = new ASTNodeIndex(root);
+				root.setProperty(PROPERTY, ret);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * The nodes in pre-order, stably sorted by start position.
+	 */
+	private final ASTNode[] nodes;
+
+	private final int[] starts;
+
+	private ASTNodeIndex(final CompilationUnit root) {
+		final List<ASTNode> list = new ArrayList<>();
+		root.accept(new ASTVisitor() {
+			@Override
+			public void preVisit(final ASTNode node) {
+				list.add(node);
+			}
+		});
+		// pre-order is already sorted for well formed trees, this is a stable no-op then.
+		Collections.sort(list, Comparator.comparingInt(ASTNode::getStartPosition));
+		this.nodes = list.toArray(new ASTNode[list.size()]);
+		this.starts = new int[this.nodes.length];
+		for (int i = 0; i < this.nodes.length; i++)
+			this.starts[i] = this.nodes[i].getStartPosition();
+	}
+
+	/**
+	 * @param offset A source position.
+	 * @return The innermost node starting at offset, or <code>null</code> if there
+	 *         is none.
+	 */
+	public ASTNode find(final int offset) {
+		final int last = this.upperBound(offset) - 1;
+		return last >= 0 && this.starts[last] == offset ? this.nodes[last] : null;
+	}
+
+	/**
+	 * @param offset A source position.
+	 * @param length A source length.
+	 * @return The innermost node with exactly the given source range, or
+	 *         <code>null</code> if there is none.
+	 */
+	public ASTNode find(final int offset, final int length) {
+		for (int i = this.upperBound(offset) - 1; i >= 0 && this.starts[i] == offset; i--)
+			if (this.nodes[i].getLength() == length)
+				return this.nodes[i];
+		return null;
+	}
+
+	/**
+	 * @param offset   A source position.
+	 * @param length   A source length.
+	 * @param nodeType A node type.
+	 * @return The innermost node of the given type with exactly the given source
+	 *         range, or <code>null</code> if there is none.
+	 */
+	public ASTNode find(final int offset, final int length, final int nodeType) {
+		for (int i = this.upperBound(offset) - 1; i >= 0 && this.starts[i] == offset; i--)
+			if (this.nodes[i].getLength() == length && this.nodes[i].getNodeType() == nodeType)
+				return this.nodes[i];
+		return null;
+	}
+
+	/**
+	 * @param offset A source position.
+	 * @return All nodes starting at offset, from the outermost to the innermost.
+	 */
+	public List<ASTNode> findAll(final int offset) {
+		final List<ASTNode> ret = new ArrayList<>();
+		for (int i = this.lowerBound(offset); i < this.starts.length && this.starts[i] == offset; i++)
+			ret.add(this.nodes[i]);
+		return ret;
+	}
+
+	/**
+	 * @return The index of the first node starting at or after offset.
+	 */
+	private int lowerBound(final int offset) {
+		int low = 0;
+		int high = this.starts.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (this.starts[mid] < offset)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @return The index of the first node starting after offset.
+	 */
+	private int upperBound(final int offset) {
+		int low = 0;
+		int high = this.starts.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (this.starts[mid] <= offset)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -12,20 +12,30 @@ public class TimeCollector {
 	private long collectedTime;
 	private long start;
 
-	public void clear() {
+	/**
+	 * The number of threads between {@link #start()} and {@link #stop()}. Only
+	 * the time during which at least one of them is running is collected, so that
+	 * overlapping intervals aren't counted twice.
+	 */
+	private int running;
+
+	public synchronized void clear() {
 		this.collectedTime = 0;
 	}
 
-	public long getCollectedTime() {
+	public synchronized long getCollectedTime() {
 		return this.collectedTime;
 	}
 
-	public void start() {
-		this.start = System.currentTimeMillis();
+	public synchronized void start() {
+		if (this.running++ == 0)
+			this.start = System.currentTimeMillis();
 	}
 
-	public void stop() {
-		final long elapsed = System.currentTimeMillis() - this.start;
-		this.collectedTime += elapsed;
+	public synchronized void stop() {
+		if (--this.running == 0) {
+			final long elapsed = System.currentTimeMillis() - this.start;
+			this.collectedTime += elapsed;
+		}
 	}
 }
@@ -0,0 +1,189 @@
+package edu.cuny.hunter.optionalrefactoring.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.internal.corext.refactoring.rename.MethodChecks;
+import org.eclipse.jdt.internal.corext.util.MethodOverrideTester;
+
+/**
+ * A run-scoped cache of supertype hierarchies keyed by {@link IType}, and of the
+ * top-most source methods computed from them keyed by {@link IMethod}. Seeding
+ * and propagation look up the top-most method of every invocation and return
+ * they see, and building a hierarchy is one of the most expensive model
+ * operations, so each hierarchy is built at most once per run.
+ *
+ * Hierarchies are kept per declaring type rather than per project because
+ * {@link MethodChecks#getTopmostMethod(IMethod, ITypeHierarchy, IProgressMonitor)}
+ * rebuilds any hierarchy that isn't focused on the method's declaring type.
+ *
+ * The cache also serves as the ripple method index used for formal parameter
+ * propagation: for each top-most method, the source methods overriding it are
+ * computed once from the complete hierarchy of its declaring type.
+ */
+public class TypeHierarchyCache {
+
+	private final Map<IType, ITypeHierarchy> hierarchies = new HashMap<>();
+
+	private final Map<IMethod, List<IMethod>> rippleMethods = new HashMap<>();
+
+	private final Map<IType, ITypeHierarchy> typeHierarchies = new HashMap<>();
+
+	/**
+	 * Binary top-most methods are mapped to an empty value.
+	 */
+	private final Map<IMethod, Optional<IMethod>> topMostSourceMethods = new HashMap<>();
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * The owner of the working copies taking precedence over their primary
+	 * compilation units, or <code>null</code> for the primary owner.
+	 */
+	private WorkingCopyOwner workingCopyOwner;
+
+	public synchronized void clear() {
+		this.hierarchies.clear();
+		this.rippleMethods.clear();
+		this.topMostSourceMethods.clear();
+		this.typeHierarchies.clear();
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @param top     A top-most source method.
+	 * @param monitor The progress monitor used if a hierarchy must be built.
+	 * @return top followed by the source methods overriding it, i.e., the
+	 *         declarations whose parameters change together with those of top.
+	 * @throws JavaModelException
+	 */
+	public synchronized List<IMethod> getRippleMethods(final IMethod top, final IProgressMonitor monitor)
+			throws JavaModelException {
+		List<IMethod> ret = this.rippleMethods.get(top);
+		if (ret != null) {
+			this.hits++;
+			return ret;
+		}
+		this.misses++;
+		ret = new ArrayList<>();
+		ret.add(top);
+		// only virtual methods can be overridden.
+		if (!top.isConstructor() && !Flags.isStatic(top.getFlags()) && !Flags.isPrivate(top.getFlags())) {
+			final ITypeHierarchy hierarchy = this.getTypeHierarchy(top.getDeclaringType(), monitor);
+			for (final IType subtype : hierarchy.getAllSubtypes(top.getDeclaringType())) {
+				final IMethod overriding = new MethodOverrideTester(subtype, hierarchy)
+						.findOverridingMethodInType(subtype, top);
+				if (overriding != null && !overriding.isBinary())
+					ret.add(overriding);
+			}
+		}
+		ret = Collections.unmodifiableList(ret);
+		this.rippleMethods.put(top, ret);
+		return ret;
+	}
+
+	/**
+	 * @param type    The focus type.
+	 * @param monitor The progress monitor used if the hierarchy must be built.
+	 * @return The cached supertype hierarchy of type, building it on a miss.
+	 * @throws JavaModelException
+	 */
+	public synchronized ITypeHierarchy getSupertypeHierarchy(final IType type, final IProgressMonitor monitor)
+			throws JavaModelException {
+		ITypeHierarchy ret = this.hierarchies.get(type);
+		if (ret == null) {
+			ret = this.workingCopyOwner == null ? type.newSupertypeHierarchy(monitor)
+					: type.newSupertypeHierarchy(this.workingCopyOwner, monitor);
+			this.hierarchies.put(type, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param meth    A method.
+	 * @param monitor The progress monitor used if a hierarchy must be built.
+	 * @return The method that meth ultimately overrides or implements, or meth
+	 *         itself if there is none, provided that it's declared in source, and
+	 *         <code>null</code> otherwise.
+	 * @throws JavaModelException
+	 */
+	public synchronized IMethod getTopMostSourceMethod(final IMethod meth, final IProgressMonitor monitor)
+			throws JavaModelException {
+		Optional<IMethod> ret = this.topMostSourceMethods.get(meth);
+		if (ret != null) {
+			this.hits++;
+			return ret.orElse(null);
+		}
+		this.misses++;
+		IMethod top = MethodChecks.isVirtual(meth)
+				? MethodChecks.getTopmostMethod(meth, this.getSupertypeHierarchy(meth.getDeclaringType(), monitor),
+						monitor)
+				: meth;
+
+		if (top == null)
+			top = meth;
+
+		ret = top.isBinary() ? Optional.empty() : Optional.of(top);
+		this.topMostSourceMethods.put(meth, ret);
+		return ret.orElse(null);
+	}
+
+	/**
+	 * @param type    The focus type.
+	 * @param monitor The progress monitor used if the hierarchy must be built.
+	 * @return The cached complete hierarchy of type, including its subtypes in the
+	 *         workspace, building it on a miss.
+	 * @throws JavaModelException
+	 */
+	private ITypeHierarchy getTypeHierarchy(final IType type, final IProgressMonitor monitor)
+			throws JavaModelException {
+		ITypeHierarchy ret = this.typeHierarchies.get(type);
+		if (ret == null) {
+			ret = this.workingCopyOwner == null ? type.newTypeHierarchy(monitor)
+					: type.newTypeHierarchy(this.workingCopyOwner, monitor);
+			this.typeHierarchies.put(type, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Sets the owner of the working copies that the hierarchies are built from,
+	 * dropping the hierarchies built so far.
+	 *
+	 * @param workingCopyOwner The owner, or <code>null</code> for the primary
+	 *                         owner.
+	 */
+	public synchronized void setWorkingCopyOwner(final WorkingCopyOwner workingCopyOwner) {
+		this.clear();
+		this.workingCopyOwner = workingCopyOwner;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TypeHierarchyCache [hierarchies=" + this.hierarchies.size() + ", typeHierarchies=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.typeHierarchies.size() + ", methods=" + this.topMostSourceMethods.size() + ", rippleMethods=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ this.rippleMethods.size() + ", hits=" + this.hits + ", misses=" + this.misses + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -5,13 +5,14 @@ package edu.cuny.hunter.optionalrefactoring.core.utils;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -19,6 +20,7 @@ import java.util.stream.Stream;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IInitializer;
@@ -34,7 +36,6 @@ import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
 import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
@@ -65,8 +66,9 @@ import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.internal.corext.codemanipulation.CodeGenerationSettings;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
-import org.eclipse.jdt.internal.corext.refactoring.rename.MethodChecks;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.preferences.JavaPreferencesSettings;
+import org.eclipse.jdt.ui.SharedASTProvider;
 import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.Refactoring;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -82,7 +84,6 @@ import edu.cuny.hunter.optionalrefactoring.core.descriptors.ConvertNullToOptiona
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterASTException;
 import edu.cuny.hunter.optionalrefactoring.core.exceptions.HarvesterJavaModelException;
 import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
-import edu.cuny.hunter.optionalrefactoring.core.refactorings.ComputationNode;
 import edu.cuny.hunter.optionalrefactoring.core.refactorings.ConvertNullToOptionalRefactoringProcessor;
 
 /**
@@ -229,12 +230,13 @@ public interface Util {
 		return org.eclipse.jdt.core.dom.NodeFinder.perform(cu, element.getNameRange());
 	}
 
-	static ASTNode getASTNode(final IJavaElement elem, final IProgressMonitor monitor) throws CoreException {
+	static ASTNode getASTNode(final IJavaElement elem, final ASTCache cache, final IProgressMonitor monitor)
+			throws CoreException {
 		final IMember mem = getIMember(elem);
 		final ICompilationUnit icu = mem.getCompilationUnit();
 		if (icu == null)
 			throw new HarvesterJavaModelException(PreconditionFailure.JAVA_MODEL_ERROR, mem);
-		final ASTNode root = Util.getCompilationUnit(icu, monitor);
+		final ASTNode root = cache.getCompilationUnit(icu, monitor);
 		return root;
 	}
 
@@ -246,38 +248,64 @@ public interface Util {
 		return ret;
 	}
 
-	static Set<Set<IJavaElement>> getElementForest(final Set<ComputationNode> computationForest) {
-		final Set<Set<IJavaElement>> ret = new LinkedHashSet<>();
-		for (final ComputationNode tree : computationForest)
-			ret.add(tree.getComputationTreeElements());
+	/**
+	 * @return The AST of the compilation unit declaring elem, which is only
+	 *         guaranteed to be complete for the declarations.
+	 * @throws CoreException
+	 */
+	static ASTNode getDeclarationASTNode(final IJavaElement elem, final ASTCache cache,
+			final IProgressMonitor monitor) throws CoreException {
+		final IMember mem = getIMember(elem);
+		final ICompilationUnit icu = mem.getCompilationUnit();
+		if (icu == null)
+			throw new HarvesterJavaModelException(PreconditionFailure.JAVA_MODEL_ERROR, mem);
+		final ASTNode root = cache.getDeclarations(icu, monitor);
+		return root;
+	}
+
+	/**
+	 * @return A binding-resolved AST of the compilation unit declaring member in
+	 *         which only the body enclosing member is parsed. The bodies of all
+	 *         other methods and initializers are empty.
+	 * @throws JavaModelException
+	 */
+	static CompilationUnit getFocalCompilationUnit(final IMember member, final IProgressMonitor monitor)
+			throws JavaModelException {
+		final ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(member.getCompilationUnit());
+		parser.setResolveBindings(true);
+		parser.setFocalPosition(member.getSourceRange().getOffset());
+		final CompilationUnit ret = (CompilationUnit) parser.createAST(monitor);
+		return ret;
+	}
+
+	/**
+	 * @return A binding-resolved AST of icu parsed without method bodies, which
+	 *         suffices for looking up declarations.
+	 */
+	static CompilationUnit getDeclarationCompilationUnit(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		final ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(icu);
+		parser.setResolveBindings(true);
+		parser.setIgnoreMethodBodies(true);
+		final CompilationUnit ret = (CompilationUnit) parser.createAST(monitor);
 		return ret;
 	}
 
 	static ASTNode getExactASTNode(final CompilationUnit root, final SearchMatch match) {
-		final ArrayList<ASTNode> ret = new ArrayList<>(1);
-		final ASTVisitor visitor = new ASTVisitor() {
-			@Override
-			public void preVisit(final ASTNode node) {
-				if (node.getStartPosition() == match.getOffset()) {
-					ret.clear();
-					ret.add(node);
-				}
-			}
-		};
-		root.accept(visitor);
-		return ret.get(0);
+		return ASTNodeIndex.of(root).find(match.getOffset());
 	}
 
-	static ASTNode getExactASTNode(final IJavaElement elem, final SearchMatch match,
+	static ASTNode getExactASTNode(final IJavaElement elem, final SearchMatch match, final ASTCache cache,
 			final IProgressMonitor monitor) {
 		final IMember mem = getIMember(elem);
-		final CompilationUnit root = Util.getCompilationUnit(mem.getCompilationUnit(), monitor);
+		final CompilationUnit root = cache.getCompilationUnit(mem.getCompilationUnit(), monitor);
 		return getExactASTNode(root, match);
 	}
 
-	static ASTNode getExactASTNode(final SearchMatch match, final IProgressMonitor monitor) {
+	static ASTNode getExactASTNode(final SearchMatch match, final ASTCache cache, final IProgressMonitor monitor) {
 		final IJavaElement elem = (IJavaElement) match.getElement();
-		return Util.getExactASTNode(elem, match, monitor);
+		return Util.getExactASTNode(elem, match, cache, monitor);
 	}
 
 	static IMember getIMember(final IJavaElement elem) {
@@ -316,19 +344,63 @@ public interface Util {
 		return new SourceRange(node.getStartPosition(), node.getLength());
 	}
 
-	public static IMethod getTopMostSourceMethod(final IMethod meth, final IProgressMonitor monitor)
-			throws JavaModelException {
-		IMethod top = MethodChecks.isVirtual(meth)
-				? MethodChecks.getTopmostMethod(meth, meth.getDeclaringType().newSupertypeHierarchy(monitor), monitor)
-				: meth;
+	/**
+	 * @return The length of the source of icu, i.e., of its AST, without parsing
+	 *         it.
+	 * @throws JavaModelException
+	 */
+	static int getSourceLength(final ICompilationUnit icu) throws JavaModelException {
+		final IBuffer buffer = icu.getBuffer();
+		return buffer == null ? 0 : buffer.getLength();
+	}
+
+	/**
+	 * @return The reconciled AST of icu shared by the Java editor, or
+	 *         <code>null</code> if it's not open, not reconciled, changed since it
+	 *         was reconciled or not running in the workbench. The AST belongs to
+	 *         the editor, so it must neither be modified nor annotated. It's only
+	 *         used for seeding and for the binding-free seed check, while
+	 *         propagation and the change creation use the ASTs of the cache.
+	 */
+	static CompilationUnit getSharedCompilationUnit(final ICompilationUnit icu) {
+		if (JavaPlugin.getDefault() == null)
+			return null;
+		final CompilationUnit ret = SharedASTProvider.getAST(icu, SharedASTProvider.WAIT_NO, null);
+		if (ret == null || !icu.equals(ret.getJavaElement()))
+			return null;
+		try {
+			// the buffer may have changed since it was last reconciled.
+			if (!icu.isConsistent())
+				return null;
+			final String source = icu.getSource();
+			// and meanwhile.
+			if (source == null || source.length() != ret.getLength() || !icu.isConsistent())
+				return null;
+		} catch (final JavaModelException e) {
+			return null;
+		}
+		return ret;
+	}
 
-		if (top == null)
-			top = meth;
+	/**
+	 * @return An AST of icu parsed without resolving bindings, which is
+	 *         considerably cheaper than {@link #getCompilationUnit}.
+	 */
+	static CompilationUnit getSyntacticCompilationUnit(final ICompilationUnit icu, final IProgressMonitor monitor) {
+		final ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(icu);
+		parser.setResolveBindings(false);
+		final CompilationUnit ret = (CompilationUnit) parser.createAST(monitor);
+		return ret;
+	}
 
-		if (top.isBinary())
-			return null;
-		else
-			return top;
+	/**
+	 * Uncached, use {@link TypeHierarchyCache#getTopMostSourceMethod(IMethod, IProgressMonitor)}
+	 * within a run.
+	 */
+	public static IMethod getTopMostSourceMethod(final IMethod meth, final IProgressMonitor monitor)
+			throws JavaModelException {
+		return new TypeHierarchyCache().getTopMostSourceMethod(meth, monitor);
 	}
 
 	static boolean isBinaryCode(final IJavaElement element) throws HarvesterJavaModelException {
@@ -406,6 +478,30 @@ public interface Util {
 		}
 	}
 
+	/**
+	 * Waits for a task running concurrently.
+	 *
+	 * @return The result of task.
+	 * @throws CoreException The failure of task, rethrown as is.
+	 */
+	static <T> T join(final Future<T> task) throws CoreException {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	@SafeVarargs
 	static <T> List<T> listOf(final T... o) {
 		return Stream.of(o).collect(Collectors.toCollection(LinkedList::new));
@@ -618,7 +714,7 @@ public interface Util {
 			PreconditionFailure failure) {
 		return new RefactoringStatusEntry(failure.getSeverity(settings), 
 				failure.getMessage(),
-				new N2ORefactoringStatusContext(instance.element, getSourceRange(instance.node), failure), 
+				new N2ORefactoringStatusContext(instance.element, instance.range, failure), 
 				ConvertNullToOptionalRefactoringDescriptor.REFACTORING_ID,
 				failure.getCode());
 	}
@@ -1,5 +0,0 @@
-package edu.cuny.hunter.optionalrefactoring.core.utils;
-
-public interface Visitable {
-	public void accept(Visitor visitor);
-}
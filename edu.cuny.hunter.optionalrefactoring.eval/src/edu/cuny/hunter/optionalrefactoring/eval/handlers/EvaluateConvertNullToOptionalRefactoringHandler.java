@@ -3,6 +3,9 @@ package edu.cuny.hunter.optionalrefactoring.eval.handlers;
 import static edu.cuny.hunter.optionalrefactoring.core.utils.Util.candidatePrinter;
 import static edu.cuny.hunter.optionalrefactoring.core.utils.Util.createNullToOptionalRefactoringProcessor;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -15,9 +18,11 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobGroup;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -42,6 +47,154 @@ import edu.cuny.hunter.optionalrefactoring.eval.utils.Util;;
 @SuppressWarnings("deprecation")
 public class EvaluateConvertNullToOptionalRefactoringHandler extends EvaluateRefactoringHandler {
 
+	/**
+	 * The environment variable that, if set, makes the projects be evaluated in
+	 * parallel.
+	 */
+	private static final String PARALLEL_EVALUATION = "parallelevaluation";
+
+	/**
+	 * The number of projects evaluated at once in parallel mode.
+	 */
+	private static final int MAX_PARALLEL_EVALUATIONS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Prints the rows of a project followed by an empty line.
+	 */
+	private static void print(List<List<Object>> rows, CSVPrinter printer) throws IOException {
+		for (List<Object> row : rows)
+			printer.printRecord(row);
+		printer.println();
+	}
+
+	/**
+	 * Evaluates the refactoring on a single project.
+	 *
+	 * @param elementResults Receives a row per element of each passing set.
+	 * @param setSummaries   Receives a row per passing set.
+	 */
+	private static void evaluate(IJavaProject javaProject, List<List<Object>> elementResults,
+			List<List<Object>> setSummaries, IProgressMonitor monitor) throws Exception {
+		if (!javaProject.isStructureKnown())
+			throw new IllegalStateException(
+					String.format("Project: %s should compile beforehand.", javaProject.getElementName()));
+
+		// each project has its own, so its time isn't mixed with that of others.
+		TimeCollector resultsTimeCollector = new TimeCollector();
+
+		resultsTimeCollector.start();
+		ConvertNullToOptionalRefactoringProcessor processor = createNullToOptionalRefactoringProcessor(
+				new IJavaProject[] { javaProject }, RefactoringSettings
+						.userDefaults() /*
+										 * we inject user defaults
+										 * for now
+										 */,
+				Optional.of(monitor));
+		processor.settings().createFromEnv();
+		resultsTimeCollector.stop();
+
+		// run the precondition checking.
+		resultsTimeCollector.start();
+		RefactoringStatus status = new ProcessorBasedRefactoring(processor)
+				.checkAllConditions(new NullProgressMonitor());
+		resultsTimeCollector.stop();
+
+		Set<Entities> passingSets = processor.getEntities();
+
+		// don't interleave with other projects.
+		synchronized (System.out) {
+			System.out.print("{");
+			passingSets.forEach(set -> {
+				candidatePrinter(set);
+				System.out.print(", ");
+			});
+			System.out.println("}");
+			System.out.println(String.format("Project: %s evaluated in %d ms.", javaProject.getElementName(),
+					resultsTimeCollector.getCollectedTime()));
+		}
+
+		for (Entities set : passingSets) {
+			// Let's print some information about what's inside
+			setSummaries.add(Arrays.asList(set.hashCode(), set.status()));
+			for (IJavaElement element : set)
+				elementResults.add(Arrays.asList(element.getJavaProject().getElementName(), set.hashCode(),
+						element.getElementName(), element.getClass().getSimpleName(),
+						element.getElementType() == IJavaElement.LOCAL_VARIABLE
+								? element.getAncestor(IJavaElement.METHOD).getElementName() + "\n"
+										+ element.getAncestor(IJavaElement.METHOD)
+												.getAncestor(IJavaElement.TYPE).getElementName()
+								: element.getAncestor(IJavaElement.TYPE).getElementName(),
+						element.isReadOnly(), element.getResource().isDerived()));
+		}
+
+		// Then let's refactor them
+		// TODO: This should refer to a constant in this file as it once did #59.
+//		if (processor.settings().doesTransformation()) {
+//
+//		}
+
+		// Then let's print some more information about the
+		// refactoring
+	}
+
+	/**
+	 * Evaluates the refactoring on each project in a job of its own, running at
+	 * most {@link #MAX_PARALLEL_EVALUATIONS} at once. Each project collects rows
+	 * of its own, which are printed in the order of the projects once all jobs are
+	 * done. The jobs are canceled if waiting for them is.
+	 *
+	 * @return The combined status of the jobs.
+	 */
+	private static IStatus evaluateInParallel(IJavaProject[] javaProjects, CSVPrinter elementResultsPrinter,
+			CSVPrinter setSummaryPrinter, IProgressMonitor monitor) throws Exception {
+		String pluginId = FrameworkUtil.getBundle(EvaluateConvertNullToOptionalRefactoringHandler.class)
+				.getSymbolicName();
+		JobGroup group = new JobGroup("Evaluating projects ...", MAX_PARALLEL_EVALUATIONS, javaProjects.length);
+		List<List<List<Object>>> elementResults = new ArrayList<>(javaProjects.length);
+		List<List<List<Object>>> setSummaries = new ArrayList<>(javaProjects.length);
+
+		for (IJavaProject javaProject : javaProjects) {
+			List<List<Object>> projectElementResults = new ArrayList<>();
+			List<List<Object>> projectSetSummaries = new ArrayList<>();
+			elementResults.add(projectElementResults);
+			setSummaries.add(projectSetSummaries);
+
+			Job job = Job.create("Evaluating " + javaProject.getElementName() + " ...", jobMonitor -> {
+				try {
+					evaluate(javaProject, projectElementResults, projectSetSummaries, jobMonitor);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				} catch (Exception e) {
+					return new Status(IStatus.ERROR, pluginId,
+							"Encountered exception while evaluating " + javaProject.getElementName(), e);
+				}
+				return Status.OK_STATUS;
+			});
+			// nothing may change the project while it's being evaluated.
+			job.setRule(javaProject.getProject());
+			job.setJobGroup(group);
+			job.schedule();
+		}
+
+		boolean joined = false;
+		try {
+			group.join(0, monitor);
+			joined = true;
+		} finally {
+			// don't leave the jobs running if we stopped waiting for them.
+			if (!joined)
+				group.cancel();
+		}
+
+		for (int i = 0; i < javaProjects.length; i++) {
+			print(setSummaries.get(i), setSummaryPrinter);
+			print(elementResults.get(i), elementResultsPrinter);
+		}
+
+		// the group is canceled on the first failure, as the sequential loop is.
+		return group.getResult();
+	}
+
 	/**
 	 * the command has been executed, so extract extract the needed information
 	 * from the application context.
@@ -68,65 +221,19 @@ public class EvaluateConvertNullToOptionalRefactoringHandler extends EvaluateRef
 
 				IJavaProject[] javaProjects = Util.getSelectedJavaProjectsFromEvent(event);
 
-				for (IJavaProject javaProject : javaProjects) {
-					if (!javaProject.isStructureKnown())
-						throw new IllegalStateException(
-								String.format("Project: %s should compile beforehand.", javaProject.getElementName()));
-
-					TimeCollector resultsTimeCollector = new TimeCollector();
-
-					resultsTimeCollector.start();
-					ConvertNullToOptionalRefactoringProcessor processor = createNullToOptionalRefactoringProcessor(
-							new IJavaProject[] { javaProject }, RefactoringSettings
-									.userDefaults() /*
-													 * we inject user defaults
-													 * for now
-													 */,
-							Optional.of(monitor));
-					processor.settings().createFromEnv();
-					resultsTimeCollector.stop();
-
-					// run the precondition checking.
-					resultsTimeCollector.start();
-					RefactoringStatus status = new ProcessorBasedRefactoring(processor)
-							.checkAllConditions(new NullProgressMonitor());
-					resultsTimeCollector.stop();
-
-					Set<Entities> passingSets = processor.getEntities();
-
-					System.out.print("{");
-					passingSets.forEach(set -> {
-						candidatePrinter(set);
-						System.out.print(", ");
-					});
-					System.out.println("}");
-
-					for (Entities set : passingSets) {
-						// Let's print some information about what's inside
-						setSummaryPrinter.printRecord(set.hashCode(), set.status());
-						for (IJavaElement element : set)
-							elementResultsPrinter.printRecord(element.getJavaProject().getElementName(), set.hashCode(),
-									element.getElementName(), element.getClass().getSimpleName(),
-									element.getElementType() == IJavaElement.LOCAL_VARIABLE
-											? element.getAncestor(IJavaElement.METHOD).getElementName() + "\n"
-													+ element.getAncestor(IJavaElement.METHOD)
-															.getAncestor(IJavaElement.TYPE).getElementName()
-											: element.getAncestor(IJavaElement.TYPE).getElementName(),
-									element.isReadOnly(), element.getResource().isDerived());
+				if (Util.isSetInEnv(PARALLEL_EVALUATION)) {
+					IStatus status = evaluateInParallel(javaProjects, elementResultsPrinter, setSummaryPrinter,
+							monitor);
+					if (!status.isOK())
+						return status;
+				} else
+					for (IJavaProject javaProject : javaProjects) {
+						List<List<Object>> elementResults = new ArrayList<>();
+						List<List<Object>> setSummaries = new ArrayList<>();
+						evaluate(javaProject, elementResults, setSummaries, monitor);
+						print(setSummaries, setSummaryPrinter);
+						print(elementResults, elementResultsPrinter);
 					}
-					setSummaryPrinter.println();
-					elementResultsPrinter.println();
-
-					// Then let's refactor them
-					// TODO: This should refer to a constant in this file as it once did #59.
-//					if (processor.settings().doesTransformation()) {
-//
-//					}
-
-					// Then let's print some more information about the
-					// refactoring
-
-				}
 			} catch (Exception e) {
 				return new Status(IStatus.ERROR, FrameworkUtil.getBundle(this.getClass()).getSymbolicName(),
 						"Encountered exception during evaluation", e);
@@ -19,6 +19,14 @@ public class Util {
 		return javaProjects;
 	}
 
+	/**
+	 * @param name The name of an environment variable.
+	 * @return true if the variable is set, ignoring case.
+	 */
+	public static boolean isSetInEnv(String name) {
+		return System.getenv().keySet().stream().anyMatch(name::equalsIgnoreCase);
+	}
+
 	private Util() {
 	}
 }
@@ -0,0 +1,76 @@
+package edu.cuny.hunter.optionalrefactoring.ui.tests;
+
+import java.util.EnumSet;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.ltk.core.refactoring.Refactoring;
+
+import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings.Mode;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Runs the tests of {@link ConvertNullToOptionalRefactoringTest} once per
+ * mode, each of which must give the same results as the default modes. The
+ * modes that only apply to whole packages or projects, i.e., parsing in
+ * batches and seeding in parallel, are run on the packages of the input units.
+ */
+public class ConvertNullToOptionalRefactoringModesTest extends ConvertNullToOptionalRefactoringTest {
+
+	private static void addTests(final TestSuite suite, final Mode mode, final boolean packageScope) {
+		final TestSuite tests = new TestSuite(ConvertNullToOptionalRefactoringTest.class);
+		final TestSuite ret = new TestSuite(mode + (packageScope ? " on packages" : ""));
+		for (int i = 0; i < tests.testCount(); i++)
+			ret.addTest(new ConvertNullToOptionalRefactoringModesTest(((TestCase) tests.testAt(i)).getName(),
+					EnumSet.of(mode), packageScope));
+		suite.addTest(ret);
+	}
+
+	public static Test suite() {
+		final TestSuite ret = new TestSuite(ConvertNullToOptionalRefactoringModesTest.class.getName());
+		addTests(ret, Mode.BATCH_PARSING, true);
+		addTests(ret, Mode.BATCH_SEARCHES, false);
+		addTests(ret, Mode.FLOW_GRAPH, false);
+		addTests(ret, Mode.INDEX_REFERENCES, false);
+		addTests(ret, Mode.INDEX_NULL_SITES, false);
+		addTests(ret, Mode.PARALLEL_SEEDING, true);
+		addTests(ret, Mode.PARALLEL_PROPAGATION, false);
+		addTests(ret, Mode.PARALLEL_CHANGE_CREATION, false);
+		addTests(ret, Mode.WORKING_COPY_LAYER, false);
+		return setUpTest(ret);
+	}
+
+	private final EnumSet<Mode> modes;
+
+	private final boolean packageScope;
+
+	/**
+	 * @param name         The name of the test method to run.
+	 * @param modes        The modes to run it in.
+	 * @param packageScope Whether to run the refactoring on the packages of the
+	 *                     input units rather than on the units themselves.
+	 */
+	public ConvertNullToOptionalRefactoringModesTest(final String name, final EnumSet<Mode> modes,
+			final boolean packageScope) {
+		super(name);
+		this.modes = modes;
+		this.packageScope = packageScope;
+	}
+
+	@Override
+	protected EnumSet<Mode> getModes() {
+		return EnumSet.copyOf(this.modes);
+	}
+
+	@Override
+	protected Refactoring getRefactoring(final IJavaElement... elements) throws JavaModelException {
+		if (!this.packageScope)
+			return super.getRefactoring(elements);
+		final IJavaElement[] packages = new IJavaElement[elements.length];
+		for (int i = 0; i < elements.length; i++)
+			packages[i] = elements[i].getAncestor(IJavaElement.PACKAGE_FRAGMENT);
+		return super.getRefactoring(packages);
+	}
+}
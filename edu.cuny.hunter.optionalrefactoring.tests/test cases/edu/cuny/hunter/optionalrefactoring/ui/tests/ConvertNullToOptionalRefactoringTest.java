@@ -37,6 +37,7 @@ import edu.cuny.hunter.optionalrefactoring.core.analysis.N2ORefactoringStatusCon
 import edu.cuny.hunter.optionalrefactoring.core.analysis.PreconditionFailure;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings;
 import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings.Choice;
+import edu.cuny.hunter.optionalrefactoring.core.analysis.RefactoringSettings.Mode;
 import edu.cuny.hunter.optionalrefactoring.core.descriptors.ConvertNullToOptionalRefactoringDescriptor;
 import edu.cuny.hunter.optionalrefactoring.core.messages.Messages;
 import edu.cuny.hunter.optionalrefactoring.core.refactorings.ConvertNullToOptionalRefactoringProcessor;
@@ -213,11 +214,21 @@ public class ConvertNullToOptionalRefactoringTest extends RefactoringTest {
 		return LOGGER;
 	}
 
+	/**
+	 * @return The modes the refactoring is run in.
+	 *         {@link ConvertNullToOptionalRefactoringModesTest} runs the same tests
+	 *         in other modes, which must give the same results.
+	 */
+	protected EnumSet<Mode> getModes() {
+		return RefactoringSettings.defaultModes();
+	}
+
 	@Override
 	protected Refactoring getRefactoring(final IJavaElement... elements) throws JavaModelException {
 		final EnumSet<RefactoringSettings.Choice> choices = EnumSet.allOf(RefactoringSettings.Choice.class);
 		final ConvertNullToOptionalRefactoringProcessor processor = Util.createNullToOptionalRefactoringProcessor(
-				elements, new RefactoringSettings(choices) /* here the test defaults are injected*/, Optional.empty());
+				elements, new RefactoringSettings(choices, this.getModes()) /* here the test defaults are injected*/,
+				Optional.empty());
 		return new ProcessorBasedRefactoring(processor);
 	}
 
@@ -254,6 +265,8 @@ public class ConvertNullToOptionalRefactoringTest extends RefactoringTest {
 		if (!turnOff.isEmpty())
 			turnOff.forEach(choice -> refactoring.settings().set(false, choice));
 
+		// creates the working copy layer, if any.
+		refactoring.checkInitialConditions(new NullProgressMonitor());
 		final RefactoringStatus status = refactoring.checkFinalConditions(new NullProgressMonitor(), null);
 
 		System.out.println(refactoring.settings());
@@ -623,6 +636,7 @@ public class ConvertNullToOptionalRefactoringTest extends RefactoringTest {
 		if (turnOff != null)
 			processor.settings().set(false, turnOff);
 
+		refactoring.checkInitialConditions(new NullProgressMonitor());
 		final RefactoringStatus finalStatus = refactoring.checkFinalConditions(new NullProgressMonitor());
 		this.getLogger().info("Final status: " + finalStatus);
 